@@ -0,0 +1,147 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolved name of a coordinate frame. Handles are interned, i.e. there is
+ * at most one handle per frame name at a time, and carry a small dense index
+ * the transformer cores use to map them to their internal frame numbers.
+ * Lookups with handles therefore skip the validation and hashing of frame
+ * names.
+ * <p>
+ * A handle can be resolved before the frame is known to any transformer and
+ * can be shared between threads and receivers. The intern table only holds
+ * handles weakly, so handles of frame names that are no longer used, e.g.
+ * of per object frames, are collected and their index is reused by later
+ * handles. Keep a handle to avoid resolving the name again.
+ */
+public final class FrameHandle {
+
+    private static final ConcurrentMap<String, HandleReference> HANDLES = new ConcurrentHashMap<>();
+
+    // guarded by HANDLES
+    private static final ReferenceQueue<FrameHandle> COLLECTED = new ReferenceQueue<>();
+    private static final BitSet FREE_INDICES = new BitSet();
+    private static int nextIndex;
+
+    /**
+     * Entry of the intern table, keeps name and index to release them once
+     * the handle is collected.
+     */
+    private static final class HandleReference extends WeakReference<FrameHandle> {
+
+        private final String name;
+        private final int index;
+
+        private HandleReference(FrameHandle handle) {
+            super(handle, COLLECTED);
+            this.name = handle.name;
+            this.index = handle.index;
+        }
+    }
+
+    private final String name;
+    private final int index;
+
+    private FrameHandle(String name, int index) {
+        this.name = name;
+        this.index = index;
+    }
+
+    /**
+     * Returns the handle of a frame.
+     *
+     * @param frameId The name of the frame
+     * @return The handle of the frame
+     * @throws TransformerException is thrown if the frame name is empty or
+     * starts with a '/'.
+     */
+    public static FrameHandle of(String frameId) throws TransformerException {
+        final HandleReference reference = HANDLES.get(frameId);
+        final FrameHandle handle = reference != null ? reference.get() : null;
+        if (handle != null) {
+            return handle;
+        }
+        if (frameId.isEmpty()) {
+            throw new TransformerException("Invalid frame handle, frame ids cannot be empty");
+        }
+        if (frameId.startsWith("/")) {
+            throw new TransformerException("Invalid frame handle \"" + frameId + "\", frame ids cannot start with a '/'");
+        }
+        synchronized (HANDLES) {
+            releaseCollected();
+            final HandleReference interned = HANDLES.get(frameId);
+            final FrameHandle existing = interned != null ? interned.get() : null;
+            if (existing != null) {
+                return existing;
+            }
+            final int free = FREE_INDICES.nextSetBit(0);
+            final FrameHandle created;
+            if (free >= 0) {
+                FREE_INDICES.clear(free);
+                created = new FrameHandle(frameId, free);
+            } else {
+                created = new FrameHandle(frameId, nextIndex++);
+            }
+            HANDLES.put(frameId, new HandleReference(created));
+            return created;
+        }
+    }
+
+    /**
+     * Removes the entries of collected handles and frees their indices.
+     * Requires the lock of the table.
+     */
+    private static void releaseCollected() {
+        HandleReference reference;
+        while ((reference = (HandleReference) COLLECTED.poll()) != null) {
+            HANDLES.remove(reference.name, reference);
+            FREE_INDICES.set(reference.index);
+        }
+    }
+    /**
+     * @return The name of the frame
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The dense index of this handle, unique among all handles that
+     * are in use
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameHandle[" + name + "]";
+    }
+}
@@ -0,0 +1,156 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+/**
+ * Poses of all frames of the transformer relative to the root of their tree
+ * at one point in time, see
+ * {@link TransformReceiver#lookupFramePoses(long)}. The poses are stored in
+ * one flat array and are addressed either by position or by
+ * {@link FrameHandle}. Instances are immutable.
+ */
+public final class FramePoses {
+
+    private static final int STRIDE = 7;
+
+    private final FrameHandle[] frames;
+    private final FrameHandle[] roots;
+    private final double[] poses;
+    private final int[] positions;
+    private final long time;
+
+    /**
+     * Creates the poses. Attention: This should not be called by the user,
+     * the poses are created by the transformer cores.
+     *
+     * @param frames The frames
+     * @param roots The root of the tree of every frame
+     * @param poses Translation x, y, z and rotation x, y, z, w of every frame
+     * relative to its root
+     * @param time The time of the poses
+     */
+    public FramePoses(FrameHandle[] frames, FrameHandle[] roots, double[] poses, long time) {
+        this.frames = frames;
+        this.roots = roots;
+        this.poses = poses;
+        this.time = time;
+        int maxIndex = -1;
+        for (final FrameHandle frame : frames) {
+            maxIndex = Math.max(maxIndex, frame.getIndex());
+        }
+        this.positions = new int[maxIndex + 1];
+        Arrays.fill(positions, -1);
+        for (int position = 0; position < frames.length; position++) {
+            positions[frames[position].getIndex()] = position;
+        }
+    }
+
+    /**
+     * @return The number of frames
+     */
+    public int size() {
+        return frames.length;
+    }
+
+    /**
+     * @return The time of the poses
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @param frame The frame
+     * @return The position of the frame or -1 if it is not contained
+     */
+    public int indexOf(FrameHandle frame) {
+        final int index = frame.getIndex();
+        return index < positions.length ? positions[index] : -1;
+    }
+
+    /**
+     * @param position The position of the frame
+     * @return The frame at the position
+     */
+    public FrameHandle getFrame(int position) {
+        return frames[position];
+    }
+
+    /**
+     * @param position The position of the frame
+     * @return The root of the tree of the frame, which is the frame itself
+     * if it has no parent at the time
+     */
+    public FrameHandle getRoot(int position) {
+        return roots[position];
+    }
+
+    /**
+     * @param position The position of the frame
+     * @param result The vector the translation relative to the root is
+     * written to
+     * @return The given vector for convenience
+     */
+    public Vector3d getTranslation(int position, Vector3d result) {
+        final int offset = position * STRIDE;
+        result.set(poses[offset], poses[offset + 1], poses[offset + 2]);
+        return result;
+    }
+
+    /**
+     * @param position The position of the frame
+     * @param result The quaternion the rotation relative to the root is
+     * written to
+     * @return The given quaternion for convenience
+     */
+    public Quat4d getRotation(int position, Quat4d result) {
+        final int offset = position * STRIDE;
+        result.set(poses[offset + 3], poses[offset + 4], poses[offset + 5], poses[offset + 6]);
+        return result;
+    }
+
+    /**
+     * Writes the pose of a frame relative to its root into the holder.
+     *
+     * @param frame The frame
+     * @param result The holder the transform from the frame into its root is
+     * written to
+     * @return false if the frame is not contained
+     */
+    public boolean getTransform(FrameHandle frame, MutableTransform result) {
+        final int position = indexOf(frame);
+        if (position < 0) {
+            return false;
+        }
+        final int offset = position * STRIDE;
+        result.set(poses[offset], poses[offset + 1], poses[offset + 2],
+                poses[offset + 3], poses[offset + 4], poses[offset + 5], poses[offset + 6],
+                roots[position].getName(), frame.getName(), time);
+        return true;
+    }
+}
@@ -0,0 +1,60 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+/**
+ * Outcome of a lookup that reports failures without throwing, see
+ * {@link TransformReceiver#tryLookupTransform(FrameHandle, FrameHandle, long, MutableTransform)}.
+ */
+public enum LookupStatus {
+
+    /**
+     * The transform was found.
+     */
+    OK,
+    /**
+     * The source or the target frame is not known to the transformer.
+     */
+    UNKNOWN_FRAME,
+    /**
+     * The frames are not part of the same tree.
+     */
+    NOT_CONNECTED,
+    /**
+     * A frame on the path has no data as old as the requested time.
+     */
+    EXTRAPOLATION_PAST,
+    /**
+     * A frame on the path has no data as recent as the requested time.
+     */
+    EXTRAPOLATION_FUTURE,
+    /**
+     * A frame on the path has no data at all.
+     */
+    NO_DATA,
+    /**
+     * The tree contains a loop.
+     */
+    LOOP
+}
@@ -0,0 +1,180 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+/**
+ * A reusable holder for the result of a transform lookup. In contrast to
+ * {@link Transform}, which is created anew for every lookup, an instance of
+ * this class is filled in place by
+ * {@link TransformReceiver#lookupTransform(String, String, long, MutableTransform)}.
+ * This keeps high frequency lookup loops free of allocations.
+ * <p>
+ * The vector and quaternion returned by the getters are the internal state of
+ * this holder and are overwritten by the next lookup. Instances must not be
+ * shared between threads.
+ */
+public class MutableTransform {
+
+    private final Vector3d translation = new Vector3d();
+    private final Quat4d rotation = new Quat4d(0.0, 0.0, 0.0, 1.0);
+    private String frameParent;
+    private String frameChild;
+    private long time;
+    private boolean extrapolated;
+
+    /**
+     * Overwrites the content of this holder.
+     *
+     * @param translation The translation part of the transform
+     * @param rotation The rotation part of the transform
+     * @param frameParent The parent coordinate frame ID
+     * @param frameChild The child coordinate frame ID
+     * @param time The time of the transform
+     */
+    public void set(Vector3d translation, Quat4d rotation, String frameParent, String frameChild, long time) {
+        this.translation.set(translation);
+        this.rotation.set(rotation);
+        this.frameParent = frameParent;
+        this.frameChild = frameChild;
+        this.time = time;
+        this.extrapolated = false;
+    }
+
+    /**
+     * Overwrites the content of this holder from primitive values.
+     *
+     * @param x The x component of the translation
+     * @param y The y component of the translation
+     * @param z The z component of the translation
+     * @param qx The x component of the rotation quaternion
+     * @param qy The y component of the rotation quaternion
+     * @param qz The z component of the rotation quaternion
+     * @param qw The w component of the rotation quaternion
+     * @param frameParent The parent coordinate frame ID
+     * @param frameChild The child coordinate frame ID
+     * @param time The time of the transform
+     */
+    public void set(double x, double y, double z, double qx, double qy, double qz, double qw, String frameParent, String frameChild, long time) {
+        this.translation.set(x, y, z);
+        this.rotation.set(qx, qy, qz, qw);
+        this.frameParent = frameParent;
+        this.frameChild = frameChild;
+        this.time = time;
+        this.extrapolated = false;
+    }
+
+    /**
+     * Overwrites the content of this holder with the identity transform.
+     *
+     * @param frameParent The parent coordinate frame ID
+     * @param frameChild The child coordinate frame ID
+     * @param time The time of the transform
+     */
+    public void setIdentity(String frameParent, String frameChild, long time) {
+        this.translation.set(0, 0, 0);
+        this.rotation.set(0.0, 0.0, 0.0, 1.0);
+        this.frameParent = frameParent;
+        this.frameChild = frameChild;
+        this.time = time;
+        this.extrapolated = false;
+    }
+
+    /**
+     * @return The translation part of the transform. The returned instance
+     * is reused by the next lookup.
+     */
+    public Vector3d getTranslation() {
+        return translation;
+    }
+
+    /**
+     * @return The rotation part of the transform. The returned instance is
+     * reused by the next lookup.
+     */
+    public Quat4d getRotationQuat() {
+        return rotation;
+    }
+
+    /**
+     * Writes the transform into an existing Java3D {@link Transform3D}.
+     *
+     * @param transform The transform to write to
+     * @return The given transform for convenience
+     */
+    public Transform3D getTransform(final Transform3D transform) {
+        transform.set(rotation, translation, 1.0);
+        return transform;
+    }
+
+    public String getFrameParent() {
+        return frameParent;
+    }
+
+    public String getFrameChild() {
+        return frameChild;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return true if the transform depends on a sample that was
+     * extrapolated beyond the latest data of a frame, see
+     * {@link TransformerConfig#setMaxExtrapolation(long)}.
+     */
+    public boolean isExtrapolated() {
+        return extrapolated;
+    }
+
+    /**
+     * Flags the current content as extrapolated. The flag is cleared by every
+     * {@code set} method.
+     *
+     * @param extrapolated true if the transform was extrapolated
+     */
+    public void setExtrapolated(boolean extrapolated) {
+        this.extrapolated = extrapolated;
+    }
+
+    /**
+     * Creates an independent {@link Transform} of the current content.
+     *
+     * @return A new transform object
+     */
+    public Transform toTransform() {
+        final Transform transform = new Transform(translation.x, translation.y, translation.z, rotation.x, rotation.y, rotation.z, rotation.w, frameParent, frameChild, time);
+        transform.setExtrapolated(extrapolated);
+        return transform;
+    }
+
+    @Override
+    public String toString() {
+        return "MutableTransform[parent:" + frameParent + "; child:" + frameChild + "; time:" + time + "; translation:" + translation + "; rotation:" + rotation + "]";
+    }
+}
@@ -0,0 +1,285 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+/**
+ * Applies a looked up transform to many points at once. The rotation matrix
+ * is evaluated once when the instance is created, the points are then
+ * transformed in place without allocating per point.
+ * <p>
+ * Points are stored interleaved as x, y, z in arrays or buffers. Inputs of at
+ * least {@value #PARALLEL_THRESHOLD} points are split into chunks that are
+ * transformed by the common {@link ForkJoinPool}, smaller inputs are
+ * transformed by the calling thread. Instances are immutable.
+ */
+public final class PointTransform {
+
+    /**
+     * Minimum number of points that are transformed in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Number of points a parallel task transforms without splitting further.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final double m00, m01, m02, tx;
+    private final double m10, m11, m12, ty;
+    private final double m20, m21, m22, tz;
+
+    private PointTransform(Matrix3d rotation, double tx, double ty, double tz) {
+        this.m00 = rotation.m00;
+        this.m01 = rotation.m01;
+        this.m02 = rotation.m02;
+        this.m10 = rotation.m10;
+        this.m11 = rotation.m11;
+        this.m12 = rotation.m12;
+        this.m20 = rotation.m20;
+        this.m21 = rotation.m21;
+        this.m22 = rotation.m22;
+        this.tx = tx;
+        this.ty = ty;
+        this.tz = tz;
+    }
+
+    private PointTransform(double x, double y, double z, double qx, double qy, double qz, double qw) {
+        this(rotationMatrix(qx, qy, qz, qw), x, y, z);
+    }
+
+    private static Matrix3d rotationMatrix(double qx, double qy, double qz, double qw) {
+        final Matrix3d rotation = new Matrix3d();
+        rotation.set(new Quat4d(qx, qy, qz, qw));
+        return rotation;
+    }
+
+    /**
+     * @param pose The pose to apply
+     * @return The point transform mapping points of the child frame of the
+     * pose into its parent frame
+     */
+    public static PointTransform of(final Pose pose) {
+        return new PointTransform(pose.getX(), pose.getY(), pose.getZ(), pose.getQx(), pose.getQy(), pose.getQz(), pose.getQw());
+    }
+
+    /**
+     * @param transform The transform to apply
+     * @return The point transform mapping points of the child frame of the
+     * transform into its parent frame
+     */
+    public static PointTransform of(final Transform transform) {
+        final Vector3d translation = transform.getTranslation();
+        return new PointTransform(transform.getRotationMatrix(), translation.x, translation.y, translation.z);
+    }
+
+    /**
+     * @param transform The transform to apply
+     * @return The point transform mapping points of the child frame of the
+     * transform into its parent frame
+     */
+    public static PointTransform of(final MutableTransform transform) {
+        final Vector3d translation = transform.getTranslation();
+        final Quat4d rotation = transform.getRotationQuat();
+        return new PointTransform(translation.x, translation.y, translation.z, rotation.x, rotation.y, rotation.z, rotation.w);
+    }
+
+    /**
+     * Transforms all points of an interleaved array in place.
+     *
+     * @param points The coordinates x, y, z of every point
+     */
+    public void transform(final double[] points) {
+        transform(points, 0, points.length / 3);
+    }
+
+    /**
+     * Transforms points of an interleaved array in place.
+     *
+     * @param points The coordinates x, y, z of every point
+     * @param offset The index of the x coordinate of the first point
+     * @param count The number of points to transform
+     */
+    public void transform(final double[] points, final int offset, final int count) {
+        checkRange(points.length, offset, count);
+        run(count, (from, to) -> transformRange(points, offset + 3 * from, offset + 3 * to));
+    }
+
+    /**
+     * Transforms all points of an interleaved array in place.
+     *
+     * @param points The coordinates x, y, z of every point
+     */
+    public void transform(final float[] points) {
+        transform(points, 0, points.length / 3);
+    }
+
+    /**
+     * Transforms points of an interleaved array in place. The points are
+     * transformed with double precision and rounded when they are stored.
+     *
+     * @param points The coordinates x, y, z of every point
+     * @param offset The index of the x coordinate of the first point
+     * @param count The number of points to transform
+     */
+    public void transform(final float[] points, final int offset, final int count) {
+        checkRange(points.length, offset, count);
+        run(count, (from, to) -> transformRange(points, offset + 3 * from, offset + 3 * to));
+    }
+
+    /**
+     * Transforms the points between the position and the limit of a buffer
+     * in place. The position of the buffer is not changed.
+     *
+     * @param points The coordinates x, y, z of every point
+     */
+    public void transform(final DoubleBuffer points) {
+        final int offset = points.position();
+        final int count = points.remaining() / 3;
+        if (points.hasArray()) {
+            transform(points.array(), points.arrayOffset() + offset, count);
+            return;
+        }
+        run(count, (from, to) -> transformRange(points, offset + 3 * from, offset + 3 * to));
+    }
+
+    /**
+     * Transforms the points between the position and the limit of a buffer
+     * in place. The position of the buffer is not changed.
+     *
+     * @param points The coordinates x, y, z of every point
+     */
+    public void transform(final FloatBuffer points) {
+        final int offset = points.position();
+        final int count = points.remaining() / 3;
+        if (points.hasArray()) {
+            transform(points.array(), points.arrayOffset() + offset, count);
+            return;
+        }
+        run(count, (from, to) -> transformRange(points, offset + 3 * from, offset + 3 * to));
+    }
+
+    private void transformRange(final double[] points, final int start, final int end) {
+        for (int i = start; i < end; i += 3) {
+            final double x = points[i];
+            final double y = points[i + 1];
+            final double z = points[i + 2];
+            points[i] = m00 * x + m01 * y + m02 * z + tx;
+            points[i + 1] = m10 * x + m11 * y + m12 * z + ty;
+            points[i + 2] = m20 * x + m21 * y + m22 * z + tz;
+        }
+    }
+
+    private void transformRange(final float[] points, final int start, final int end) {
+        for (int i = start; i < end; i += 3) {
+            final double x = points[i];
+            final double y = points[i + 1];
+            final double z = points[i + 2];
+            points[i] = (float) (m00 * x + m01 * y + m02 * z + tx);
+            points[i + 1] = (float) (m10 * x + m11 * y + m12 * z + ty);
+            points[i + 2] = (float) (m20 * x + m21 * y + m22 * z + tz);
+        }
+    }
+
+    private void transformRange(final DoubleBuffer points, final int start, final int end) {
+        for (int i = start; i < end; i += 3) {
+            final double x = points.get(i);
+            final double y = points.get(i + 1);
+            final double z = points.get(i + 2);
+            points.put(i, m00 * x + m01 * y + m02 * z + tx);
+            points.put(i + 1, m10 * x + m11 * y + m12 * z + ty);
+            points.put(i + 2, m20 * x + m21 * y + m22 * z + tz);
+        }
+    }
+
+    private void transformRange(final FloatBuffer points, final int start, final int end) {
+        for (int i = start; i < end; i += 3) {
+            final double x = points.get(i);
+            final double y = points.get(i + 1);
+            final double z = points.get(i + 2);
+            points.put(i, (float) (m00 * x + m01 * y + m02 * z + tx));
+            points.put(i + 1, (float) (m10 * x + m11 * y + m12 * z + ty));
+            points.put(i + 2, (float) (m20 * x + m21 * y + m22 * z + tz));
+        }
+    }
+
+    private static void checkRange(final int length, final int offset, final int count) {
+        if (offset < 0 || count < 0 || offset + 3L * count > length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " and " + count + " points exceed the length " + length);
+        }
+    }
+
+    private static void run(final int count, final Range range) {
+        if (count < PARALLEL_THRESHOLD) {
+            range.apply(0, count);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeTask(range, 0, count));
+        }
+    }
+
+    /**
+     * Transforms the points [from, to) of one input.
+     */
+    @FunctionalInterface
+    private interface Range {
+
+        void apply(int from, int to);
+    }
+
+    /**
+     * Splits a range of points in halves until the chunks are small enough.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Range range;
+        private final int from;
+        private final int to;
+
+        private RangeTask(Range range, int from, int to) {
+            this.range = range;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                range.apply(from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(range, from, middle), new RangeTask(range, middle, to));
+        }
+    }
+}
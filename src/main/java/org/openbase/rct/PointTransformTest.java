@@ -0,0 +1,171 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Point3d;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class PointTransformTest {
+
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(PointTransformTest.class);
+
+	private static final int SCAN_SIZE = 1000000;
+
+	private static final Transform TRANSFORM = new Transform(new Transform3D(new Quat4d(0.1, 0.7, -0.3, 0.6), new Vector3d(1, -2, 3), 1),
+			"map", "lidar", 0);
+
+	private static double[] randomPoints(int count) {
+		final Random random = new Random(count);
+		final double[] points = new double[3 * count];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = 100 * random.nextDouble() - 50;
+		}
+		return points;
+	}
+
+	private static double[] expected(double[] points) {
+		final double[] expected = new double[points.length];
+		final Point3d point = new Point3d();
+		for (int i = 0; i < points.length; i += 3) {
+			point.set(points[i], points[i + 1], points[i + 2]);
+			TRANSFORM.getTransform().transform(point);
+			expected[i] = point.x;
+			expected[i + 1] = point.y;
+			expected[i + 2] = point.z;
+		}
+		return expected;
+	}
+
+	@Test
+	public void testTransformArrays() {
+		final double[] points = randomPoints(1000);
+		final double[] expected = expected(points);
+
+		final double[] doubles = points.clone();
+		PointTransform.of(TRANSFORM).transform(doubles);
+		final float[] floats = new float[points.length];
+		for (int i = 0; i < points.length; i++) {
+			floats[i] = (float) points[i];
+		}
+		PointTransform.of(TRANSFORM).transform(floats);
+		for (int i = 0; i < points.length; i++) {
+			assertEquals(expected[i], doubles[i], 1e-9);
+			assertEquals(expected[i], floats[i], 1e-4);
+		}
+
+		// only the given range is transformed
+		final double[] range = points.clone();
+		PointTransform.of(TRANSFORM).transform(range, 3, 2);
+		assertEquals(points[0], range[0], 0);
+		assertEquals(expected[3], range[3], 1e-9);
+		assertEquals(expected[8], range[8], 1e-9);
+		assertEquals(points[9], range[9], 0);
+	}
+
+	@Test
+	public void testTransformBuffers() throws TransformerException {
+		final double[] points = randomPoints(PointTransform.PARALLEL_THRESHOLD + 17);
+		final double[] expected = expected(points);
+		final PointTransform transform = PointTransform.of(TRANSFORM.toPose());
+
+		final DoubleBuffer heap = DoubleBuffer.wrap(points.clone());
+		final DoubleBuffer direct = ByteBuffer.allocateDirect(8 * points.length).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		direct.put(points).flip();
+		final FloatBuffer floats = ByteBuffer.allocateDirect(4 * points.length).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		for (double value : points) {
+			floats.put((float) value);
+		}
+		floats.flip();
+		transform.transform(heap);
+		transform.transform(direct);
+		transform.transform(floats);
+
+		assertEquals(0, direct.position());
+		for (int i = 0; i < points.length; i++) {
+			assertEquals(expected[i], heap.get(i), 1e-9);
+			assertEquals(expected[i], direct.get(i), 1e-9);
+			assertEquals(expected[i], floats.get(i), 1e-4);
+		}
+	}
+
+	/**
+	 * Benchmark of transforming a scan of {@value #SCAN_SIZE} points with the
+	 * per point {@link Transform3D} path and with the bulk transform, on the
+	 * calling thread and split across the fork join pool. Only logs the
+	 * timings and is run explicitly.
+	 */
+	@Ignore("benchmark")
+	@Test
+	public void benchmarkBulkTransform() {
+		final double[] scan = randomPoints(SCAN_SIZE);
+		final double[] points = scan.clone();
+		final PointTransform transform = PointTransform.of(TRANSFORM);
+
+		double perPoint = Double.MAX_VALUE;
+		double sequential = Double.MAX_VALUE;
+		double parallel = Double.MAX_VALUE;
+		for (int round = 0; round < 10; round++) {
+			System.arraycopy(scan, 0, points, 0, scan.length);
+			long start = System.nanoTime();
+			final Transform3D transform3d = TRANSFORM.getTransform();
+			for (int i = 0; i < points.length; i += 3) {
+				final Point3d point = new Point3d(points[i], points[i + 1], points[i + 2]);
+				transform3d.transform(point);
+				points[i] = point.x;
+				points[i + 1] = point.y;
+				points[i + 2] = point.z;
+			}
+			perPoint = Math.min(perPoint, (double) (System.nanoTime() - start) / SCAN_SIZE);
+
+			System.arraycopy(scan, 0, points, 0, scan.length);
+			start = System.nanoTime();
+			for (int offset = 0; offset < SCAN_SIZE; offset += PointTransform.PARALLEL_THRESHOLD - 1) {
+				transform.transform(points, 3 * offset, Math.min(PointTransform.PARALLEL_THRESHOLD - 1, SCAN_SIZE - offset));
+			}
+			sequential = Math.min(sequential, (double) (System.nanoTime() - start) / SCAN_SIZE);
+
+			System.arraycopy(scan, 0, points, 0, scan.length);
+			start = System.nanoTime();
+			transform.transform(points);
+			parallel = Math.min(parallel, (double) (System.nanoTime() - start) / SCAN_SIZE);
+		}
+		LOGGER.info(SCAN_SIZE + " points, per point Transform3D: " + perPoint + " ns, bulk: " + sequential + " ns, parallel bulk: " + parallel + " ns");
+
+		assertEquals(expected(scan)[42], points[42], 1e-9);
+	}
+}
@@ -0,0 +1,221 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+/**
+ * Immutable transform from the coordinate frame "parent" to "child" at one
+ * point in time. In contrast to {@link Transform} the translation and rotation
+ * quaternion are stored as plain values, the accessors do not allocate and
+ * equality compares the values and the interned {@link FrameHandle}s
+ * directly. Instances can be shared freely between threads.
+ */
+public final class Pose {
+
+    private final double x, y, z;
+    private final double qx, qy, qz, qw;
+    private final FrameHandle frameParent;
+    private final FrameHandle frameChild;
+    private final long time;
+    private final boolean extrapolated;
+
+    /**
+     * Creates a new pose.
+     *
+     * @param x The x component of the translation
+     * @param y The y component of the translation
+     * @param z The z component of the translation
+     * @param qx The x component of the rotation quaternion
+     * @param qy The y component of the rotation quaternion
+     * @param qz The z component of the rotation quaternion
+     * @param qw The w component of the rotation quaternion
+     * @param frameParent The parent coordinate frame
+     * @param frameChild The child coordinate frame
+     * @param time The time of the pose
+     */
+    public Pose(double x, double y, double z, double qx, double qy, double qz, double qw, FrameHandle frameParent, FrameHandle frameChild, long time) {
+        this(x, y, z, qx, qy, qz, qw, frameParent, frameChild, time, false);
+    }
+
+    /**
+     * Creates a new pose that may be the result of an extrapolation.
+     *
+     * @param x The x component of the translation
+     * @param y The y component of the translation
+     * @param z The z component of the translation
+     * @param qx The x component of the rotation quaternion
+     * @param qy The y component of the rotation quaternion
+     * @param qz The z component of the rotation quaternion
+     * @param qw The w component of the rotation quaternion
+     * @param frameParent The parent coordinate frame
+     * @param frameChild The child coordinate frame
+     * @param time The time of the pose
+     * @param extrapolated true if the pose was extrapolated beyond the latest data
+     */
+    public Pose(double x, double y, double z, double qx, double qy, double qz, double qw, FrameHandle frameParent, FrameHandle frameChild, long time, boolean extrapolated) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.qx = qx;
+        this.qy = qy;
+        this.qz = qz;
+        this.qw = qw;
+        this.frameParent = frameParent;
+        this.frameChild = frameChild;
+        this.time = time;
+        this.extrapolated = extrapolated;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public double getQx() {
+        return qx;
+    }
+
+    public double getQy() {
+        return qy;
+    }
+
+    public double getQz() {
+        return qz;
+    }
+
+    public double getQw() {
+        return qw;
+    }
+
+    /**
+     * Writes the translation into an existing vector.
+     *
+     * @param translation The vector to write to
+     * @return The given vector for convenience
+     */
+    public Vector3d getTranslation(final Vector3d translation) {
+        translation.set(x, y, z);
+        return translation;
+    }
+
+    /**
+     * Writes the rotation into an existing quaternion.
+     *
+     * @param rotation The quaternion to write to
+     * @return The given quaternion for convenience
+     */
+    public Quat4d getRotationQuat(final Quat4d rotation) {
+        rotation.x = qx;
+        rotation.y = qy;
+        rotation.z = qz;
+        rotation.w = qw;
+        return rotation;
+    }
+
+    public FrameHandle getFrameParent() {
+        return frameParent;
+    }
+
+    public FrameHandle getFrameChild() {
+        return frameChild;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return true if the pose depends on a sample that was extrapolated
+     * beyond the latest data of a frame, see
+     * {@link TransformerConfig#setMaxExtrapolation(long)}.
+     */
+    public boolean isExtrapolated() {
+        return extrapolated;
+    }
+
+    /**
+     * Creates a {@link Transform} of this pose. The {@link javax.media.j3d.Transform3D}
+     * of the transform is only built when it is requested.
+     *
+     * @return A new transform object
+     */
+    public Transform toTransform() {
+        final Transform transform = new Transform(x, y, z, qx, qy, qz, qw, frameParent.getName(), frameChild.getName(), time);
+        transform.setExtrapolated(extrapolated);
+        return transform;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Pose)) {
+            return false;
+        }
+        final Pose rhs = (Pose) obj;
+        return time == rhs.time
+                && extrapolated == rhs.extrapolated
+                && frameParent == rhs.frameParent
+                && frameChild == rhs.frameChild
+                && Double.doubleToLongBits(x) == Double.doubleToLongBits(rhs.x)
+                && Double.doubleToLongBits(y) == Double.doubleToLongBits(rhs.y)
+                && Double.doubleToLongBits(z) == Double.doubleToLongBits(rhs.z)
+                && Double.doubleToLongBits(qx) == Double.doubleToLongBits(rhs.qx)
+                && Double.doubleToLongBits(qy) == Double.doubleToLongBits(rhs.qy)
+                && Double.doubleToLongBits(qz) == Double.doubleToLongBits(rhs.qz)
+                && Double.doubleToLongBits(qw) == Double.doubleToLongBits(rhs.qw);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = frameParent.getIndex();
+        hash = 31 * hash + frameChild.getIndex();
+        hash = 31 * hash + Long.hashCode(time);
+        hash = 31 * hash + Boolean.hashCode(extrapolated);
+        hash = 31 * hash + Double.hashCode(x);
+        hash = 31 * hash + Double.hashCode(y);
+        hash = 31 * hash + Double.hashCode(z);
+        hash = 31 * hash + Double.hashCode(qx);
+        hash = 31 * hash + Double.hashCode(qy);
+        hash = 31 * hash + Double.hashCode(qz);
+        hash = 31 * hash + Double.hashCode(qw);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Pose[parent:" + frameParent.getName() + "; child:" + frameChild.getName() + "; time:" + time
+                + "; translation:(" + x + ", " + y + ", " + z + "); rotation:(" + qx + ", " + qy + ", " + qz + ", " + qw + ")]";
+    }
+}
@@ -36,17 +36,29 @@ import javax.vecmath.Vector3d;
  * transformation itself as a Java3D {@link Transform3D} object, the parent and
  * child frame IDs, the time at which it was created from the database and the
  * ID of the authority that generated this object.
+ * <p>
+ * Transforms created from a translation and a rotation quaternion, like the
+ * results of lookups, only build their {@link Transform3D} when it is
+ * requested by {@link #getTransform()} or one of the methods that depend on
+ * it.
  * 
  * @author lziegler
  *
  */
 public class Transform {
 
-	private Transform3D transform;
+	// squared norms closer to 1 are taken as unit quaternions
+	private static final double UNIT_TOLERANCE = 1e-12;
+
+	// either the pose x, y, z, qx, qy, qz, qw or the transform is set, the
+	// transform takes precedence once it exists
+	private final double[] pose;
+	private volatile Transform3D transform;
 	private String frameParent;
 	private String frameChild;
 	private long time;
 	private String authority;
+	private boolean extrapolated;
 
 	/**
 	 * Creates a new transform object as copy from another transform object.
@@ -54,11 +66,19 @@ public class Transform {
 	 * @param transform The original to copy from.
 	 */
 	public Transform(final Transform transform) {
-		this.transform = new Transform3D(transform.transform);
+		final Transform3D original = transform.transform;
+		if (original != null) {
+			this.pose = null;
+			this.transform = new Transform3D(original);
+		} else {
+			// the pose array is never modified, so it can be shared
+			this.pose = transform.pose;
+		}
 		this.frameParent = transform.frameParent;
 		this.frameChild = transform.frameChild;
 		this.time = transform.time;
 		this.authority = transform.authority;
+		this.extrapolated = transform.extrapolated;
 	}
 
 	/**
@@ -74,19 +94,59 @@ public class Transform {
 	 *            The time at which this object was created.
 	 */
 	public Transform(Transform3D transform, String frameParent, String frameChild, long time) {
+		this.pose = null;
 		this.transform = transform;
 		this.frameParent = frameParent;
 		this.frameChild = frameChild;
 		this.time = time;
 	}
 
+	/**
+	 * Creates a new transform object from a translation and a rotation
+	 * quaternion. The {@link Transform3D} is built on first use. The
+	 * quaternion is normalized like by {@link Transform3D}, so caches and
+	 * poses only hold unit rotations.
+	 * 
+	 * @param x The x component of the translation
+	 * @param y The y component of the translation
+	 * @param z The z component of the translation
+	 * @param qx The x component of the rotation quaternion
+	 * @param qy The y component of the rotation quaternion
+	 * @param qz The z component of the rotation quaternion
+	 * @param qw The w component of the rotation quaternion
+	 * @param frameParent
+	 *            The parent coordinate frame ID
+	 * @param frameChild
+	 *            The child coordinate frame ID
+	 * @param time
+	 *            The time at which this object was created.
+	 */
+	public Transform(double x, double y, double z, double qx, double qy, double qz, double qw, String frameParent, String frameChild, long time) {
+		final double squaredNorm = qx * qx + qy * qy + qz * qz + qw * qw;
+		if (Math.abs(squaredNorm - 1) <= UNIT_TOLERANCE) {
+			// keep unit quaternions, e.g. of poses, unchanged
+			this.pose = new double[] { x, y, z, qx, qy, qz, qw };
+		} else {
+			final double norm = Math.sqrt(squaredNorm);
+			this.pose = new double[] { x, y, z, qx / norm, qy / norm, qz / norm, qw / norm };
+		}
+		this.frameParent = frameParent;
+		this.frameChild = frameChild;
+		this.time = time;
+	}
+
 	/**
 	 * Getter for the geometric transform representation.
 	 * 
 	 * @return The transform as Java3D {@link Transform3D}
 	 */
 	public Transform3D getTransform() {
-		return transform;
+		Transform3D current = transform;
+		if (current == null) {
+			current = new Transform3D(new Quat4d(pose[3], pose[4], pose[5], pose[6]), new Vector3d(pose[0], pose[1], pose[2]), 1.0);
+			transform = current;
+		}
+		return current;
 	}
 
 	/**
@@ -95,8 +155,12 @@ public class Transform {
 	 * @return The translation as Java3D Vecmath {@link Vector3d}
 	 */
 	public Vector3d getTranslation() {
+		final Transform3D current = transform;
+		if (current == null) {
+			return new Vector3d(pose[0], pose[1], pose[2]);
+		}
 		Vector3d translation = new Vector3d();
-		transform.get(translation);
+		current.get(translation);
 		return translation;
 	}
 
@@ -106,8 +170,12 @@ public class Transform {
 	 * @return The rotation as Java3D Vecmath {@link Quat4d}
 	 */
 	public Quat4d getRotationQuat() {
+		final Transform3D current = transform;
+		if (current == null) {
+			return new Quat4d(pose[3], pose[4], pose[5], pose[6]);
+		}
 		Quat4d quat = new Quat4d();
-		transform.get(quat);
+		current.get(quat);
 		return quat;
 	}
 
@@ -118,7 +186,12 @@ public class Transform {
 	 */
 	public Matrix3d getRotationMatrix() {
 		Matrix3d rot = new Matrix3d();
-		transform.get(rot);
+		final Transform3D current = transform;
+		if (current == null) {
+			rot.set(getRotationQuat());
+		} else {
+			current.get(rot);
+		}
 		return rot;
 	}
 
@@ -154,6 +227,26 @@ public class Transform {
 		return new Vector3d(yawOut, pitchOut, rollOut);
 	}
 
+	/**
+	 * Creates an immutable {@link Pose} of this transform. Transforms that
+	 * were created from a translation and a rotation quaternion are converted
+	 * without building their {@link Transform3D}.
+	 * 
+	 * @return The pose
+	 * @throws TransformerException is thrown if one of the frame IDs is not a
+	 *             valid frame handle.
+	 */
+	public Pose toPose() throws TransformerException {
+		final FrameHandle parent = FrameHandle.of(frameParent);
+		final FrameHandle child = FrameHandle.of(frameChild);
+		if (transform == null) {
+			return new Pose(pose[0], pose[1], pose[2], pose[3], pose[4], pose[5], pose[6], parent, child, time, extrapolated);
+		}
+		final Vector3d translation = getTranslation();
+		final Quat4d rotation = getRotationQuat();
+		return new Pose(translation.x, translation.y, translation.z, rotation.x, rotation.y, rotation.z, rotation.w, parent, child, time, extrapolated);
+	}
+
 	/**
 	 * Setter for the geometric transform object.
 	 * 
@@ -238,11 +331,31 @@ public class Transform {
 		this.authority = authority;
 	}
 
+	/**
+	 * Tells whether this transform depends on a sample that was extrapolated
+	 * beyond the latest data of a frame, see
+	 * {@link TransformerConfig#setMaxExtrapolation(long)}.
+	 * 
+	 * @return true if the transform was extrapolated
+	 */
+	public boolean isExtrapolated() {
+		return extrapolated;
+	}
+
+	/**
+	 * Setter for the extrapolation flag.
+	 * 
+	 * @param extrapolated true if the transform was extrapolated
+	 */
+	public void setExtrapolated(boolean extrapolated) {
+		this.extrapolated = extrapolated;
+	}
+
 	@Override
 	public String toString() {
 
 		Matrix4d mat = new Matrix4d();
-		transform.get(mat);
+		getTransform().get(mat);
 		String tStr = String
 				.format("{%.2f %.2f %.2f %.2f; %.2f %.2f %.2f %.2f; %.2f %.2f %.2f %.2f; %.2f %.2f %.2f %.2f}",
 						mat.m00, mat.m01, mat.m02, mat.m03, mat.m10, mat.m11,
@@ -263,7 +376,7 @@ public class Transform {
 		return new EqualsBuilder().
 				append(frameChild, rhs.frameChild).
 				append(frameParent, rhs.frameParent).
-				append(transform, rhs.transform).
+				append(getTransform(), rhs.getTransform()).
 				isEquals();
 	}
 
@@ -279,7 +392,7 @@ public class Transform {
 				append(frameChild, rhs.frameChild).
 				append(frameParent, rhs.frameParent).
 				append(time, rhs.time).
-				append(transform, rhs.transform).
+				append(getTransform(), rhs.getTransform()).
 				isEquals();
 	}
 
@@ -289,7 +402,7 @@ public class Transform {
 				append(frameChild).
 				append(frameParent).
 				append(time).
-				append(transform).
+				append(getTransform()).
 				toHashCode();
 	}
 }
@@ -0,0 +1,70 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+/**
+ * Looks up the transform between two frames at a sequence of times, e.g. at
+ * the timestamps of the points of a lidar sweep, see
+ * {@link TransformReceiver#openCursor(FrameHandle, FrameHandle)}. The cursor
+ * remembers where the previous lookup ended in the history of every frame on
+ * the path, so lookups with non decreasing times take amortized constant time
+ * per frame. Earlier times are allowed but searched from scratch.
+ * <p>
+ * A cursor is not thread safe, every thread has to open its own cursor.
+ */
+public interface TransformCursor {
+
+    /**
+     * @return The frame to which data is transformed
+     */
+    FrameHandle getTargetFrame();
+
+    /**
+     * @return The frame where the data originated
+     */
+    FrameHandle getSourceFrame();
+
+    /**
+     * Get the transform at the given time and advance the cursor to it.
+     *
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder that receives the transform between the frames
+     * @throws TransformerException is thrown if the transformation is not available.
+     */
+    void lookup(long time, MutableTransform result) throws TransformerException;
+
+    /**
+     * Get the transforms at many times in one call and advance the cursor to
+     * the last of them. The frame tree is only locked once for all times.
+     *
+     * @param times The times at which the values of the transform are desired
+     * @param offset The index of the first time
+     * @param count The number of times
+     * @param poses Receives translation x, y, z and rotation x, y, z, w of the
+     * transform at every time, starting at index 0
+     * @throws TransformerException is thrown if the transformation is not
+     * available at one of the times.
+     */
+    void lookup(long[] times, int offset, int count, double[] poses) throws TransformerException;
+}
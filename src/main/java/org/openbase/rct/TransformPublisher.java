@@ -61,6 +61,16 @@ public class TransformPublisher {
         comm.sendTransform(transform, transformType);
     }
 
+    /**
+     * Add transform information to the rct data structure.
+     * @param pose  The pose to store.
+     * @param transformType Defines if this transformation is static or dynamically updated over time. (This cannot be changed after the first call.)
+     * @throws TransformerException
+     */
+    public void sendTransform(Pose pose, TransformType transformType) throws TransformerException {
+        comm.sendTransform(pose.toTransform(), transformType);
+    }
+
     /**
      * Add transform information to the rct data structure.
      * @param transforms The transformations to store.
@@ -22,7 +22,12 @@ package org.openbase.rct;
  * #L%
  */
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.openbase.rct.impl.TransformCommunicator;
 import org.openbase.rct.impl.TransformerCore;
@@ -74,6 +79,20 @@ public class TransformReceiver {
         return core.lookupTransform(targetFrame, sourceFrame, time);
     }
 
+    /**
+     * Get the transform between two frames by frame ID and write it into the
+     * given holder. Reusing the holder keeps steady state lookups free of
+     * allocations.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder that receives the transform between the frames
+     * @throws TransformerException
+     */
+    public void lookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result) throws TransformerException {
+        core.lookupTransform(targetFrame, sourceFrame, time, result);
+    }
+
     /**
      * Get the transform between two frames by frame ID assuming fixed frame.
      * @param targetFrame The frame to which data should be transformed
@@ -89,6 +108,33 @@ public class TransformReceiver {
         return core.lookupTransform(targetFrame, targetTime, sourceFrame, sourceTime, fixedFrame);
     }
 
+    /**
+     * Get the transforms from many frames into one frame by frame ID, e.g.
+     * all detected objects into the map frame at the time of a camera image.
+     * All transforms are looked up on the same state of the frame tree and
+     * the parts of the tree the frames share are only walked once.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrames The frames where the data originated
+     * @param time The time at which the value of the transforms is desired. (0 will get the latest of every pair)
+     * @return The transforms from the source frames in the same order
+     * @throws TransformerException is thrown if any of the transformations is not available.
+     */
+    public Transform[] lookupTransforms(String targetFrame, String[] sourceFrames, long time) throws TransformerException {
+        return core.lookupTransforms(targetFrame, sourceFrames, time);
+    }
+
+    /**
+     * Get the poses of all frames relative to the root of their tree, e.g. for
+     * visualization. This evaluates the tree once instead of walking it for
+     * every frame.
+     * @param time The time of the poses. (0 will use the latest sample of every frame)
+     * @return The poses keyed by frame handle
+     * @throws TransformerException is thrown if the tree contains a loop.
+     */
+    public FramePoses lookupFramePoses(long time) throws TransformerException {
+        return core.lookupFramePoses(time);
+    }
+
     /**
      * Request the transform between two frames by frame ID.
      * @param targetFrame The frame to which data should be transformed
@@ -101,6 +147,39 @@ public class TransformReceiver {
         return core.requestTransform(targetFrame, sourceFrame, time);
     }
 
+    /**
+     * Request the transform between two frames by frame ID without blocking
+     * a thread. The request is dropped when the future is cancelled or times
+     * out.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param timeout The time after which the future fails with a TimeoutException, 0 to wait forever
+     * @param unit The unit of the timeout
+     * @param executor The executor dependent stages of the future run on, null for a thread pool shared by all transformers
+     * @return A future of the transform between the frames
+     */
+    public CompletableFuture<Transform> requestTransform(String targetFrame, String sourceFrame, long time, long timeout, TimeUnit unit, Executor executor) {
+        return core.requestTransform(targetFrame, sourceFrame, time, timeout, unit, executor);
+    }
+
+    /**
+     * Subscribe to the latest transform between two frames by frame ID
+     * instead of polling it. The consumer receives a new transform whenever
+     * a frame on the path between the frames receives data. Updates that
+     * arrive while the consumer is busy or faster than the maximal rate are
+     * merged into one delivery of the latest transform.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param maxRate The maximal number of deliveries per second, 0 for no limit
+     * @param executor The executor the consumer runs on, null for a thread pool shared by all transformers
+     * @param consumer The consumer of the transforms
+     * @return The subscription, which has to be cancelled to stop the updates
+     */
+    public TransformSubscription subscribeTransform(String targetFrame, String sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer) {
+        return core.subscribeTransform(targetFrame, sourceFrame, maxRate, executor, consumer);
+    }
+
     /**
      * Test if a transform is possible
      * @param targetFrame The frame into which to transform
@@ -125,6 +204,172 @@ public class TransformReceiver {
         return core.canTransform(targetFrame, targetTime, sourceFrame, sourceTime, fixedFrame);
     }
 
+    /**
+     * Resolve a frame ID into a handle. Lookups with handles skip the
+     * validation and hashing of the frame names, so frames that are used
+     * repeatedly should be resolved once. The frame does not need to be known
+     * yet.
+     * @param frameId The frame ID
+     * @return The handle of the frame
+     * @throws TransformerException is thrown if the frame ID is invalid.
+     */
+    public FrameHandle resolveFrame(String frameId) throws TransformerException {
+        return FrameHandle.of(frameId);
+    }
+
+    /**
+     * Get the transform between two frames by frame handle.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return The transform between the frames
+     * @throws TransformerException
+     */
+    public Transform lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException {
+        return core.lookupTransform(targetFrame, sourceFrame, time);
+    }
+
+    /**
+     * Get the transform between two frames by frame handle and write it into
+     * the given holder.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder that receives the transform between the frames
+     * @throws TransformerException
+     */
+    public void lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result) throws TransformerException {
+        core.lookupTransform(targetFrame, sourceFrame, time, result);
+    }
+
+    /**
+     * Get the transform between two frames without throwing. Failures are
+     * reported by the returned status only.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform is written to if the status is {@link LookupStatus#OK}
+     * @return The status of the lookup
+     */
+    public LookupStatus tryLookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result) {
+        return core.tryLookupTransform(targetFrame, sourceFrame, time, result);
+    }
+
+    /**
+     * Get the transform between two frames by frame handle without throwing.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform is written to if the status is {@link LookupStatus#OK}
+     * @return The status of the lookup
+     */
+    public LookupStatus tryLookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result) {
+        return core.tryLookupTransform(targetFrame, sourceFrame, time, result);
+    }
+
+    /**
+     * Open a cursor that looks up the transform between two frames at a
+     * sequence of non decreasing times, e.g. the point times of a lidar sweep.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @return The cursor, to be used by one thread only
+     */
+    public TransformCursor openCursor(FrameHandle targetFrame, FrameHandle sourceFrame) {
+        return core.openCursor(targetFrame, sourceFrame);
+    }
+
+    /**
+     * Get the transform between two frames by frame handle as immutable pose.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return The pose of the source frame in the target frame
+     * @throws TransformerException
+     */
+    public Pose lookupPose(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException {
+        return core.lookupPose(targetFrame, sourceFrame, time);
+    }
+
+    /**
+     * Get the transforms from many frames into one frame by frame handle and
+     * write them into the given holders.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrames The frames where the data originated
+     * @param time The time at which the value of the transforms is desired. (0 will get the latest of every pair)
+     * @param results The holders that receive the transforms, at least one per source frame
+     * @throws TransformerException is thrown if any of the transformations is not available.
+     */
+    public void lookupTransforms(FrameHandle targetFrame, FrameHandle[] sourceFrames, long time, MutableTransform[] results) throws TransformerException {
+        core.lookupTransforms(targetFrame, sourceFrames, time, results);
+    }
+
+    /**
+     * Request the transform between two frames by frame handle.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return A future object representing the request status and transform
+     * between the frames
+     */
+    public Future<Transform> requestTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) {
+        return core.requestTransform(targetFrame, sourceFrame, time);
+    }
+
+    /**
+     * Request the transform between two frames by frame handle without
+     * blocking a thread.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param timeout The time after which the future fails with a TimeoutException, 0 to wait forever
+     * @param unit The unit of the timeout
+     * @param executor The executor dependent stages of the future run on, null for a thread pool shared by all transformers
+     * @return A future of the transform between the frames
+     */
+    public CompletableFuture<Transform> requestTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, long timeout, TimeUnit unit, Executor executor) {
+        return core.requestTransform(targetFrame, sourceFrame, time, timeout, unit, executor);
+    }
+
+    /**
+     * Subscribe to the latest transform between two frames by frame handle.
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param maxRate The maximal number of deliveries per second, 0 for no limit
+     * @param executor The executor the consumer runs on, null for a thread pool shared by all transformers
+     * @param consumer The consumer of the transforms
+     * @return The subscription, which has to be cancelled to stop the updates
+     */
+    public TransformSubscription subscribeTransform(FrameHandle targetFrame, FrameHandle sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer) {
+        return core.subscribeTransform(targetFrame, sourceFrame, maxRate, executor, consumer);
+    }
+
+    /**
+     * Test if a transform is possible
+     * @param targetFrame The frame into which to transform
+     * @param sourceFrame frame from which to transform
+     * @param time The time at which to transform
+     * @return True if the transform is possible, false otherwise
+     */
+    public boolean canTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) {
+        return core.canTransform(targetFrame, sourceFrame, time);
+    }
+
+    /**
+     * @return the bytes taken by the histories of all frames.
+     */
+    public long getMemoryUsage() {
+        return core.getMemoryUsage();
+    }
+
+    /**
+     * Bytes taken by the history of every frame, e.g. to size the heap or to
+     * choose a memory budget, see {@link TransformerConfig#setMemoryBudget(long)}.
+     * @return the bytes by child frame name
+     */
+    public Map<String, Long> getFrameMemoryUsage() {
+        return core.getFrameMemoryUsage();
+    }
+
     public TransformerConfig getConfig() {
         return conf;
     }
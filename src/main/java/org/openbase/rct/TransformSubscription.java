@@ -0,0 +1,47 @@
+package org.openbase.rct;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Handle of a continuous transform subscription, see
+ * {@link TransformReceiver#subscribeTransform(String, String, double, java.util.concurrent.Executor, java.util.function.Consumer)}.
+ */
+public interface TransformSubscription {
+
+    /**
+     * Stops the delivery of updates. A delivery that is already running is
+     * completed.
+     */
+    void cancel();
+
+    /**
+     * @return true if the subscription is cancelled.
+     */
+    boolean isCancelled();
+
+    /**
+     * @return the number of updates that were merged into a later delivery
+     * because the consumer was busy or the rate limit was reached.
+     */
+    long getConflatedCount();
+}
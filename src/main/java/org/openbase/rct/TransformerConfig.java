@@ -22,14 +22,116 @@ package org.openbase.rct;
  * #L%
  */
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
 public class TransformerConfig {
 
     public enum CommunicatorType {
         AUTO, RSB, ROS
     }
 
+    /**
+     * Storage used for the transform history of dynamic frames.
+     */
+    public enum CacheType {
+        /**
+         * Linked list of transform objects (legacy implementation).
+         */
+        LIST,
+        /**
+         * Time ordered ring buffer of primitive arrays with binary search
+         * lookups.
+         */
+        RING_BUFFER
+    }
+
+    /**
+     * Implementation of the frame tree behind a transform receiver.
+     */
+    public enum CoreType {
+        /**
+         * Frame tree guarded by a read/write lock.
+         */
+        DEFAULT,
+        /**
+         * Immutable snapshots of the frame tree, lookups do not lock.
+         */
+        SNAPSHOT
+    }
+
+    /**
+     * How a frame resolves lookups between two samples.
+     */
+    public enum InterpolationType {
+        /**
+         * The sample closest in time, if it is within the nearest tolerance.
+         * Lookups just outside the history also resolve to the closest
+         * sample within the tolerance.
+         */
+        NEAREST,
+        /**
+         * The latest sample at or before the time (step function).
+         */
+        HOLD,
+        /**
+         * Linear interpolation of the translation and normalized linear
+         * interpolation of the rotation quaternion.
+         */
+        NLERP,
+        /**
+         * Linear interpolation of the translation and spherical linear
+         * interpolation of the rotation quaternion.
+         */
+        SLERP
+    }
+
+    /**
+     * Storage precision of the translations and rotations of dynamic frames.
+     */
+    public enum Precision {
+        /**
+         * 64 bit values.
+         */
+        DOUBLE,
+        /**
+         * 32 bit values, half the memory of {@link #DOUBLE}. Only the
+         * {@link CacheType#RING_BUFFER} stores floats.
+         */
+        FLOAT
+    }
+
+    /**
+     * Settings of the frames that match one name or glob pattern. Unset
+     * settings are null.
+     */
+    private static final class FrameSettings {
+
+        // null for a plain frame name
+        private final Pattern pattern;
+        private Long cacheTime;
+        private Integer maxSamples;
+        private Precision precision;
+        private InterpolationType interpolationType;
+
+        private FrameSettings(String framePattern) {
+            this.pattern = isGlob(framePattern) ? compileGlob(framePattern) : null;
+        }
+    }
+
     private long cacheTime = 30000;
     private CommunicatorType commType = CommunicatorType.AUTO;
+    private CacheType cacheType = CacheType.RING_BUFFER;
+    private CoreType coreType = CoreType.DEFAULT;
+    private long maxExtrapolation = 0;
+    private InterpolationType interpolationType = InterpolationType.SLERP;
+    private long nearestTolerance = Long.MAX_VALUE;
+    private int maxSamples = Integer.MAX_VALUE;
+    private Precision precision = Precision.DOUBLE;
+    private long memoryBudget = 0;
+    private final Map<String, FrameSettings> frameSettings = new LinkedHashMap<>();
 
     public TransformerConfig() {
     }
@@ -51,6 +153,31 @@ public class TransformerConfig {
         this.cacheTime = cacheTime;
     }
 
+    /**
+     * @param frameId the child frame of the transforms.
+     * @return how long the history of the frame is kept.
+     */
+    public long getCacheTime(String frameId) {
+        return resolve(frameId, settings -> settings.cacheTime, cacheTime);
+    }
+
+    /**
+     * Sets how long the history of the matching child frames is kept, e.g. a
+     * short history for high rate joint frames and a long one for slow
+     * localization frames.
+     * <p>
+     * The settings of a frame are read when its first transform arrives. A
+     * setting for the plain frame name takes precedence over the patterns,
+     * which are tried in the order they were first configured.
+     *
+     * @param framePattern a frame name or a glob pattern, where {@code *}
+     * matches any sequence of characters and {@code ?} any single character.
+     * @param cacheTime the history length of the frames.
+     */
+    public void setCacheTime(String framePattern, long cacheTime) {
+        getFrameSettings(framePattern).cacheTime = cacheTime;
+    }
+
     public CommunicatorType getCommType() {
         return commType;
     }
@@ -58,4 +185,209 @@ public class TransformerConfig {
     public void setCommType(CommunicatorType commType) {
         this.commType = commType;
     }
+
+    public CacheType getCacheType() {
+        return cacheType;
+    }
+
+    public void setCacheType(CacheType cacheType) {
+        this.cacheType = cacheType;
+    }
+
+    public CoreType getCoreType() {
+        return coreType;
+    }
+
+    public void setCoreType(CoreType coreType) {
+        this.coreType = coreType;
+    }
+
+    public long getMaxExtrapolation() {
+        return maxExtrapolation;
+    }
+
+    /**
+     * Lets lookups of dynamic frames extrapolate beyond their latest sample,
+     * e.g. to look up transforms at the current time without waiting for the
+     * next sample. Translations are extrapolated linearly and rotations with
+     * the angular velocity between the two latest samples. Results that
+     * depend on an extrapolated sample are flagged, see
+     * {@link Transform#isExtrapolated()}.
+     *
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, in the unit of the cache time. 0 (the default) disables
+     * extrapolation.
+     */
+    public void setMaxExtrapolation(long maxExtrapolation) {
+        this.maxExtrapolation = maxExtrapolation;
+    }
+
+    public InterpolationType getInterpolationType() {
+        return interpolationType;
+    }
+
+    /**
+     * @param interpolationType the interpolation of all dynamic frames
+     * without an interpolation of their own.
+     */
+    public void setInterpolationType(InterpolationType interpolationType) {
+        this.interpolationType = interpolationType;
+    }
+
+    /**
+     * @param frameId the child frame of the transforms.
+     * @return the interpolation of the frame.
+     */
+    public InterpolationType getInterpolationType(String frameId) {
+        return resolve(frameId, settings -> settings.interpolationType, interpolationType);
+    }
+
+    /**
+     * Sets the interpolation of the transforms to the matching child frames,
+     * e.g. {@link InterpolationType#NEAREST} for discrete detections.
+     *
+     * @param framePattern a frame name or glob pattern, see
+     * {@link #setCacheTime(String, long)}.
+     * @param interpolationType the interpolation of the frames.
+     */
+    public void setInterpolationType(String framePattern, InterpolationType interpolationType) {
+        getFrameSettings(framePattern).interpolationType = interpolationType;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
+    /**
+     * @param maxSamples how many samples a dynamic frame keeps at most, the
+     * oldest samples are dropped first. Unlimited by default.
+     */
+    public void setMaxSamples(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * @param frameId the child frame of the transforms.
+     * @return how many samples the frame keeps at most.
+     */
+    public int getMaxSamples(String frameId) {
+        return resolve(frameId, settings -> settings.maxSamples, maxSamples);
+    }
+
+    /**
+     * @param framePattern a frame name or glob pattern, see
+     * {@link #setCacheTime(String, long)}.
+     * @param maxSamples how many samples the matching frames keep at most.
+     */
+    public void setMaxSamples(String framePattern, int maxSamples) {
+        getFrameSettings(framePattern).maxSamples = maxSamples;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @param precision how the translations and rotations of dynamic frames
+     * are stored.
+     */
+    public void setPrecision(Precision precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * @param frameId the child frame of the transforms.
+     * @return how the translations and rotations of the frame are stored.
+     */
+    public Precision getPrecision(String frameId) {
+        return resolve(frameId, settings -> settings.precision, precision);
+    }
+
+    /**
+     * @param framePattern a frame name or glob pattern, see
+     * {@link #setCacheTime(String, long)}.
+     * @param precision how the translations and rotations of the matching
+     * frames are stored.
+     */
+    public void setPrecision(String framePattern, Precision precision) {
+        getFrameSettings(framePattern).precision = precision;
+    }
+
+    public long getNearestTolerance() {
+        return nearestTolerance;
+    }
+
+    /**
+     * @param nearestTolerance how far the closest sample of a frame with
+     * {@link InterpolationType#NEAREST} may be away from the requested time,
+     * in the unit of the cache time. Unlimited by default.
+     */
+    public void setNearestTolerance(long nearestTolerance) {
+        this.nearestTolerance = nearestTolerance;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Bounds the memory taken by the histories of all dynamic frames. Once
+     * the budget is exceeded, the core shortens the histories of frames that
+     * were not looked up recently first and of frames with the largest
+     * histories, i.e. the highest rates, next. Every frame keeps enough
+     * samples for lookups at its latest time. Shortened histories are
+     * lengthened again while the usage stays below half of the budget and
+     * are restored when the transformer is cleared.
+     *
+     * @param memoryBudget the bytes of all histories, see
+     * {@link TransformReceiver#getMemoryUsage()}. 0 (the default) disables the
+     * budget.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    private FrameSettings getFrameSettings(String framePattern) {
+        return frameSettings.computeIfAbsent(framePattern, FrameSettings::new);
+    }
+
+    /**
+     * @return the setting of the frame name, else of the first matching
+     * pattern that has it, else the default.
+     */
+    private <T> T resolve(String frameId, Function<FrameSettings, T> setting, T defaultValue) {
+        final FrameSettings named = frameSettings.get(frameId);
+        if (named != null && named.pattern == null && setting.apply(named) != null) {
+            return setting.apply(named);
+        }
+        for (final FrameSettings settings : frameSettings.values()) {
+            if (settings.pattern != null && setting.apply(settings) != null && settings.pattern.matcher(frameId).matches()) {
+                return setting.apply(settings);
+            }
+        }
+        return defaultValue;
+    }
+
+    private static boolean isGlob(String framePattern) {
+        return framePattern.indexOf('*') >= 0 || framePattern.indexOf('?') >= 0;
+    }
+
+    private static Pattern compileGlob(String glob) {
+        final StringBuilder regex = new StringBuilder();
+        int literalStart = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > literalStart) {
+                    regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                literalStart = i + 1;
+            }
+        }
+        if (literalStart < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(literalStart)));
+        }
+        return Pattern.compile(regex.toString());
+    }
 }
@@ -29,6 +29,7 @@ import org.openbase.rct.impl.TransformCommunicator;
 import org.openbase.rct.impl.TransformListener;
 import org.openbase.rct.impl.TransformerCore;
 import org.openbase.rct.impl.TransformerCoreDefault;
+import org.openbase.rct.impl.TransformerCoreSnapshot;
 import org.openbase.rct.impl.rsb.TransformCommunicatorRSB;
 
 public class TransformerFactory {
@@ -91,9 +92,18 @@ public class TransformerFactory {
 
     public TransformReceiver createTransformReceiver(Set<TransformListener> listeners, TransformerConfig config) throws TransformerFactoryException {
 
-        // TODO when there is more than one communicator or core implementation, this
-        // has to be more sophisticated
-        TransformerCore core = new TransformerCoreDefault(config.getCacheTime());
+        // TODO when there is more than one communicator, this has to be more
+        // sophisticated
+        final TransformerCore core;
+        switch (config.getCoreType()) {
+            case SNAPSHOT:
+                core = new TransformerCoreSnapshot(config);
+                break;
+            case DEFAULT:
+            default:
+                core = new TransformerCoreDefault(config);
+                break;
+        }
         TransformCommunicator comm = new TransformCommunicatorRSB("read-only");
         try {
             comm.addTransformListener(core);
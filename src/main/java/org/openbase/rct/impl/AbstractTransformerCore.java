@@ -0,0 +1,2358 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.openbase.rct.FrameHandle;
+import org.openbase.rct.FramePoses;
+import org.openbase.rct.LookupStatus;
+import org.openbase.rct.MutableTransform;
+import org.openbase.rct.Pose;
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformCursor;
+import org.openbase.rct.TransformSubscription;
+import org.openbase.rct.TransformerConfig;
+import org.openbase.rct.TransformerConfig.CacheType;
+import org.openbase.rct.TransformerConfig.InterpolationType;
+import org.openbase.rct.TransformerException;
+import org.openbase.rct.impl.TransformRequest.FutureTransform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lookup logic shared by the {@link TransformerCore} implementations. The
+ * subclasses only decide how the frame tree is stored and published: every
+ * read operation walks the {@link FrameGraph} returned by
+ * {@link #acquireGraph()} and hands it back through
+ * {@link #releaseGraph(FrameGraph)}, every new sample is passed to
+ * {@link #insertTransform(Transform, String, boolean)}.
+ */
+abstract class AbstractTransformerCore implements TransformerCore {
+
+    private enum WalkEnding {
+
+        Identity, TargetParentOfSource, SourceParentOfTarget, FullPath,
+    }
+
+    private interface TransformAccum {
+
+        void reset();
+
+        int gather(TransformCache cache, long time);
+
+        void accum(boolean source);
+
+        /**
+         * Accumulates a transform that was composed in advance instead of the
+         * last gathered one.
+         */
+        void accum(boolean source, TransformInternal composed);
+
+        void finalize(WalkEnding end, long time);
+    }
+
+    private class TransformAccumDummy implements TransformAccum {
+
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public int gather(TransformCache cache, long time) {
+            return cache.getParent(time);
+        }
+
+        @Override
+        public void accum(boolean source) {
+        }
+
+        @Override
+        public void accum(boolean source, TransformInternal composed) {
+        }
+
+        @Override
+        public void finalize(WalkEnding end, long time) {
+        }
+    }
+
+    private class TransformAccumImpl implements TransformAccum {
+
+        // offsets of the poses of source and target relative to the top
+        // frame and of the result within the poses array
+        private static final int SOURCE = 0;
+        private static final int TARGET = PoseMath.STRIDE;
+        private static final int RESULT = 2 * PoseMath.STRIDE;
+
+        final TransformInternal st = new TransformInternal();
+        private final double[] sample = new double[PoseMath.STRIDE];
+        private final double[] poses = new double[3 * PoseMath.STRIDE];
+        private long time = 0;
+        // a gathered sample was extrapolated beyond the data of its frame
+        boolean extrapolated = false;
+
+        public TransformAccumImpl() {
+            reset();
+        }
+
+        /**
+         * Resets the accumulator so the instance can be reused for the next
+         * lookup.
+         */
+        @Override
+        public void reset() {
+            time = 0;
+            extrapolated = false;
+            PoseMath.setIdentity(poses, SOURCE);
+            PoseMath.setIdentity(poses, TARGET);
+            PoseMath.setIdentity(poses, RESULT);
+        }
+
+        @Override
+        public int gather(TransformCache cache, long time) {
+            if (!cache.getData(time, st)) {
+                return 0;
+            }
+            extrapolated |= st.extrapolated;
+            return st.frame_id;
+        }
+
+        @Override
+        public void accum(boolean source) {
+            final int offset = source ? SOURCE : TARGET;
+            PoseMath.set(sample, 0, st);
+            PoseMath.compose(sample, 0, poses, offset, poses, offset);
+        }
+
+        @Override
+        public void accum(boolean source, TransformInternal composed) {
+            st.replaceWith(composed);
+            accum(source);
+        }
+
+        @Override
+        public void finalize(WalkEnding end, long time) {
+            switch (end) {
+                case Identity:
+                    break;
+                case TargetParentOfSource:
+                    System.arraycopy(poses, SOURCE, poses, RESULT, PoseMath.STRIDE);
+                    break;
+                case SourceParentOfTarget:
+                    PoseMath.invert(poses, TARGET, poses, RESULT);
+                    break;
+                case FullPath:
+                    PoseMath.inverseCompose(poses, TARGET, poses, SOURCE, poses, RESULT);
+                    break;
+            }
+            this.time = time;
+        }
+
+        /**
+         * Computes the result from the poses of source and target relative to
+         * their common root.
+         */
+        void finalize(RootPoses rootPoses, int sourceId, int targetId, long time) {
+            rootPoses.getPose(sourceId, poses, SOURCE);
+            rootPoses.getPose(targetId, poses, TARGET);
+            extrapolated = rootPoses.isExtrapolated(sourceId) || rootPoses.isExtrapolated(targetId);
+            finalize(WalkEnding.FullPath, time);
+        }
+
+        /**
+         * Computes the result from the root relative poses of source and
+         * target as written by {@link LatestPoses}.
+         */
+        void finalize(double[] latestPoses, long time) {
+            System.arraycopy(latestPoses, 0, poses, SOURCE, 2 * PoseMath.STRIDE);
+            finalize(WalkEnding.FullPath, time);
+        }
+
+        /**
+         * @return the result as a new transform, its {@link Transform3D} is
+         * only built if a caller asks for it.
+         */
+        Transform toTransform(String targetFrame, String sourceFrame) {
+            final Transform transform = new Transform(poses[RESULT], poses[RESULT + 1], poses[RESULT + 2],
+                    poses[RESULT + 3], poses[RESULT + 4], poses[RESULT + 5], poses[RESULT + 6],
+                    targetFrame, sourceFrame, time);
+            transform.setExtrapolated(extrapolated);
+            return transform;
+        }
+
+        void getPose(double[] out, int offset) {
+            System.arraycopy(poses, RESULT, out, offset, PoseMath.STRIDE);
+        }
+
+        Pose toPose(FrameHandle targetFrame, FrameHandle sourceFrame) {
+            return new Pose(poses[RESULT], poses[RESULT + 1], poses[RESULT + 2],
+                    poses[RESULT + 3], poses[RESULT + 4], poses[RESULT + 5], poses[RESULT + 6],
+                    targetFrame, sourceFrame, time, extrapolated);
+        }
+
+        void get(MutableTransform result, String targetFrame, String sourceFrame) {
+            result.set(poses[RESULT], poses[RESULT + 1], poses[RESULT + 2],
+                    poses[RESULT + 3], poses[RESULT + 4], poses[RESULT + 5], poses[RESULT + 6],
+                    targetFrame, sourceFrame, time);
+            result.setExtrapolated(extrapolated);
+        }
+    }
+
+    /**
+     * Accumulator that gathers the samples through one cursor per cache, so
+     * a sequence of walks at non decreasing times continues every search
+     * where the previous walk ended.
+     */
+    private class CursorAccum extends TransformAccumImpl {
+
+        private final Map<TransformCache, TransformCache.Cursor> cursors = new IdentityHashMap<>();
+
+        @Override
+        public int gather(TransformCache cache, long time) {
+            TransformCache.Cursor cursor = cursors.get(cache);
+            if (cursor == null) {
+                cursor = new TransformCache.Cursor();
+                cursors.put(cache, cursor);
+            }
+            if (!cache.getData(time, st, cursor)) {
+                return 0;
+            }
+            extrapolated |= st.extrapolated;
+            return st.frame_id;
+        }
+    }
+
+    private final class TimeCursor implements TransformCursor {
+
+        private final FrameHandle targetFrame;
+        private final FrameHandle sourceFrame;
+        private final CursorAccum accum = new CursorAccum();
+
+        private TimeCursor(FrameHandle targetFrame, FrameHandle sourceFrame) {
+            this.targetFrame = targetFrame;
+            this.sourceFrame = sourceFrame;
+        }
+
+        @Override
+        public FrameHandle getTargetFrame() {
+            return targetFrame;
+        }
+
+        @Override
+        public FrameHandle getSourceFrame() {
+            return sourceFrame;
+        }
+
+        @Override
+        public void lookup(long time, MutableTransform result) throws TransformerException {
+            final FrameGraph graph = acquireGraph();
+            try {
+                walk(graph, time).get(result, targetFrame.getName(), sourceFrame.getName());
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            } finally {
+                releaseGraph(graph);
+            }
+        }
+
+        @Override
+        public void lookup(long[] times, int offset, int count, double[] poses) throws TransformerException {
+            if (offset < 0 || count < 0 || offset > times.length - count) {
+                throw new TransformerException("Times " + offset + " to " + ((long) offset + count) + " are out of " + times.length + " times");
+            }
+            if (poses.length < count * PoseMath.STRIDE) {
+                throw new TransformerException("Only room for " + poses.length / PoseMath.STRIDE + " poses of " + count + " times");
+            }
+            final FrameGraph graph = acquireGraph();
+            try {
+                for (int i = 0; i < count; i++) {
+                    walk(graph, times[offset + i]).getPose(poses, i * PoseMath.STRIDE);
+                }
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            } finally {
+                releaseGraph(graph);
+            }
+        }
+
+        private TransformAccumImpl walk(FrameGraph graph, long time) throws TransformerException {
+            if (targetFrame == sourceFrame) {
+                return lookupAccum(graph, targetFrame, sourceFrame, time);
+            }
+            final int targetId = validateFrameHandle(graph, "lookupTransform argument target_frame", targetFrame);
+            final int sourceId = validateFrameHandle(graph, "lookupTransform argument source_frame", sourceFrame);
+            accum.reset();
+            try {
+                walkToTopParent(graph, accum, time, targetId, sourceId);
+            } catch (TransformerException ex) {
+                throw new TransformerException("No matching transform found", ex);
+            }
+            return accum;
+        }
+    }
+
+    /**
+     * Per thread scratch space of the lookup path. Reusing these objects keeps
+     * steady state lookups free of allocations.
+     */
+    private class LookupContext {
+
+        private final TransformAccumImpl accum = new TransformAccumImpl();
+        private final TransformAccumDummy accumDummy = new TransformAccumDummy();
+        private final RootPoses rootPoses = new RootPoses();
+        private final double[] latestPoses = new double[2 * PoseMath.STRIDE];
+
+        // source -> root chain collected by getLatestCommonTime
+        private int[] lctFrames = new int[16];
+        private long[] lctTimes = new long[16];
+        private int lctSize = 0;
+
+        private void addLct(int frameId, long time) {
+            if (lctSize == lctFrames.length) {
+                lctFrames = Arrays.copyOf(lctFrames, lctSize << 1);
+                lctTimes = Arrays.copyOf(lctTimes, lctSize << 1);
+            }
+            lctFrames[lctSize] = frameId;
+            lctTimes[lctSize] = time;
+            lctSize++;
+        }
+    }
+
+    static final int MAX_GRAPH_DEPTH = 1000;
+
+    /**
+     * Results of the latest common time lookup that are no times.
+     */
+    private static final long NOT_CONNECTED_TIME = Long.MIN_VALUE;
+    private static final long LOOP_TIME = Long.MIN_VALUE + 1;
+
+    private static final int PATH_MEMO_SIZE = 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTransformerCore.class);
+
+    /**
+     * Timer shared by all cores that fails requests after their deadline and
+     * delays rate limited subscription updates.
+     */
+    private static final ScheduledThreadPoolExecutor SHARED_TIMER = new ScheduledThreadPoolExecutor(1, daemonThreadFactory("TransformTimer"));
+
+    static {
+        SHARED_TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs the consumers of subscriptions and completes the futures of
+     * requests without an executor. A subscription has at most one delivery
+     * in progress, so a slow consumer only occupies its own thread and
+     * neither delays the timer nor other subscriptions. Callbacks of requests
+     * never run on a thread that holds the frame tree or on the timer. Idle
+     * threads terminate.
+     */
+    private static final ExecutorService SHARED_DELIVERY = Executors.newCachedThreadPool(daemonThreadFactory("TransformDelivery"));
+
+    /**
+     * Used to notify about changes of the frame tree, see
+     * {@link #waitForTransformationUpdates()}.
+     */
+    private final Object transformationFrameMapLock = new Object() {
+        @Override
+        public String toString() {
+            return "TransformationFrameMapLock";
+        }
+    };
+
+    protected final Map<Integer, String> frameAuthority = new ConcurrentHashMap<>();
+    protected final long cacheTime;
+    protected final CacheType cacheType;
+    protected final long maxExtrapolation;
+    protected final long nearestTolerance;
+    private final TransformerConfig config;
+    private final PendingRequests pendingRequests = new PendingRequests();
+    private final LatestPoses latestPoses = new LatestPoses();
+    private final ThreadLocal<LookupContext> lookupContext = ThreadLocal.withInitial(() -> new LookupContext());
+
+    /**
+     * Single thread that answers pending requests. Its thread terminates when
+     * idle.
+     */
+    private final ThreadPoolExecutor requestChecker = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory("TransformRequestChecker"));
+
+    /**
+     * Set while a check is queued but not started yet. Further triggers
+     * collapse into the queued check.
+     */
+    private final AtomicBoolean checkScheduled = new AtomicBoolean();
+    private final AtomicLong coalescedChecks = new AtomicLong();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Subscriptions indexed by the frames on their path. Replaced as a whole
+     * whenever subscriptions or the topology change.
+     */
+    private volatile Subscription[][] subscriptionsByFrame = new Subscription[0][];
+    private final AtomicBoolean indexSubscriptionsScheduled = new AtomicBoolean();
+
+    /**
+     * Frame numbers of resolved frame handles indexed by
+     * {@link FrameHandle#getIndex()}, 0 if the handle is not resolved yet.
+     * The index of a collected handle is reused by other handles, so an entry
+     * is only used if {@link #frameHandles} confirms it. Frame numbers never
+     * change, so a missing or lost entry only costs a repeated resolution.
+     */
+    private volatile int[] handleFrames = new int[16];
+
+    /**
+     * Resolved handles indexed by frame number. Keeps the handles of known
+     * frames, so their indices are not reused while the core exists.
+     */
+    private volatile FrameHandle[] frameHandles = new FrameHandle[16];
+
+    /**
+     * Direct mapped memo of resolved paths between frame pairs. Entries are
+     * immutable and replaced as a whole, so the slots need no locking.
+     */
+    private final FramePath[] pathMemo = new FramePath[PATH_MEMO_SIZE];
+
+    /**
+     * Changes whenever a static frame is published, see
+     * {@link FramePath#staticRuns}.
+     */
+    private final AtomicLong staticVersion = new AtomicLong();
+
+    /**
+     * Bytes of all histories, 0 disables the budget, see
+     * {@link TransformerConfig#setMemoryBudget(long)}.
+     */
+    private final long memoryBudget;
+
+    /**
+     * Memory accounting of the cache of a frame, guarded by the budget lock.
+     */
+    private static final class FrameMemory {
+
+        // bytes of the cache included in the usage
+        private long accounted;
+        // the history was shortened to meet the budget
+        private boolean limited;
+    }
+
+    /**
+     * Guards the memory accounting. Taken after the frame tree, see
+     * {@link #acquireGraph()}, and before the locks of the caches.
+     */
+    private final Object memoryBudgetLock = new Object();
+    private final Map<TransformCache, FrameMemory> frameMemory = new IdentityHashMap<>();
+
+    /**
+     * Sum of the accounted bytes of all caches, written under the budget
+     * lock.
+     */
+    private volatile long memoryUsage;
+
+    /**
+     * Usage above which the budget is enforced again. Exceeds the budget if
+     * all histories were already at their minimum, so that insertions do
+     * not enforce on every sample.
+     */
+    private volatile long memoryThreshold;
+
+    /**
+     * Usage at or below which the history of a limited frame can be doubled
+     * without exceeding the low water mark, {@link Long#MIN_VALUE} if no
+     * history is limited.
+     */
+    private volatile long relaxThreshold = Long.MIN_VALUE;
+
+    protected AbstractTransformerCore(final TransformerConfig config) {
+        this.cacheTime = config.getCacheTime();
+        this.cacheType = config.getCacheType();
+        this.maxExtrapolation = config.getMaxExtrapolation();
+        this.nearestTolerance = config.getNearestTolerance();
+        this.config = config;
+        this.memoryBudget = config.getMemoryBudget();
+        this.memoryThreshold = memoryBudget;
+        this.requestChecker.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the frame tree all reads of the current operation are performed
+     * on. Every call has to be paired with {@link #releaseGraph(FrameGraph)}.
+     *
+     * @return the frame tree.
+     */
+    abstract FrameGraph acquireGraph();
+
+    /**
+     * Releases the frame tree returned by {@link #acquireGraph()}.
+     *
+     * @param graph the frame tree.
+     */
+    abstract void releaseGraph(FrameGraph graph);
+
+    /**
+     * Stores the validated sample in the frame tree, allocating the frames
+     * and the cache of the child on first use.
+     *
+     * @param transform the sample with stripped frame names.
+     * @param authority the authority of the sample, may be null.
+     * @param isStatic true if a static cache is allocated for a new child.
+     * @return the frame number of the child or -1 if the sample was rejected
+     * by the cache.
+     */
+    abstract int insertTransform(Transform transform, String authority, boolean isStatic);
+
+    @Override
+    public void clear() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            if (graph.getFrameCount() > 1) {
+                for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                    final TransformCache f = graph.getFrame(counter);
+                    if (f.isValid()) {
+                        f.clearList();
+                    }
+                }
+                latestPoses.invalidateAll();
+                if (memoryBudget > 0) {
+                    resetMemoryLimits(graph);
+                }
+                notifyTransformationUpdate();
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    /**
+     * Has to be called by the implementation after a change of the topology
+     * of the frame tree was published, so pending requests follow new paths.
+     */
+    void topologyChanged() {
+        if (pendingRequests.topologyChanged()) {
+            scheduleCheckRequests();
+        }
+        if (!subscriptions.isEmpty() && indexSubscriptionsScheduled.compareAndSet(false, true)) {
+            requestChecker.execute(() -> {
+                indexSubscriptionsScheduled.set(false);
+                indexSubscriptions();
+                // the paths changed and data inserted before the new index
+                // was published may have been missed
+                for (final Subscription subscription : subscriptions) {
+                    subscription.markDirty();
+                }
+            });
+        }
+    }
+
+    void notifyTransformationUpdate() {
+        synchronized (transformationFrameMapLock) {
+            transformationFrameMapLock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean setTransform(Transform transform, boolean isStatic) throws TransformerException {
+
+        // prepare data
+        String authority = transform.getAuthority();
+        String frameChild = transform.getFrameChild().replace("/", "").trim();
+        String frameParent = transform.getFrameParent().replace("/", "").trim();
+        Quat4d quat = transform.getRotationQuat();
+        Vector3d vec = transform.getTranslation();
+        Transform stripped = new Transform(transform);
+        stripped.setFrameChild(frameChild);
+        stripped.setFrameParent(frameParent);
+
+        // check input data validity
+        if (frameChild.equals(frameParent)) {
+            LOGGER.error("Frames for parent and child are the same: " + frameChild);
+            throw new TransformerException("Frames for parent and child are the same: " + frameChild);
+        }
+        if (frameChild.isEmpty()) {
+            LOGGER.error("Child frame is empty");
+            throw new TransformerException("Child frame is empty");
+        }
+        if (frameParent.isEmpty()) {
+            LOGGER.error("Parent frame is empty");
+            throw new TransformerException("Parent frame is empty");
+        }
+        if (Double.isNaN(quat.w) || Double.isNaN(quat.x) || Double.isNaN(quat.y) || Double.isNaN(quat.z)
+                || Double.isNaN(vec.x) || Double.isNaN(vec.y) || Double.isNaN(vec.z)) {
+            LOGGER.error("Transform contains nan: " + transform);
+            throw new TransformerException("Transform contains nan: " + transform);
+        }
+
+        final int frameNumber = insertTransform(stripped, authority, isStatic);
+        if (frameNumber < 0) {
+            LOGGER.warn("TF_OLD_DATA ignoring data from the past for frame "
+                    + stripped.getFrameChild()
+                    + " at time "
+                    + stripped.getTime()
+                    + " according to authority "
+                    + authority
+                    + "\nPossible reasons are listed at http://wiki.ros.org/tf/Errors%%20explained");
+            return false;
+        }
+        latestPoses.invalidate(frameNumber);
+        if (memoryBudget > 0) {
+            final long usage = memoryUsage;
+            if (usage > memoryThreshold) {
+                enforceMemoryBudget();
+            } else if (usage <= relaxThreshold) {
+                relaxMemoryLimits();
+            }
+        }
+        if (!pendingRequests.isEmpty() && pendingRequests.dataInserted(frameNumber, stripped.getTime())) {
+            LOGGER.debug("trigger check requests.");
+            scheduleCheckRequests();
+        }
+        final Subscription[][] byFrame = subscriptionsByFrame;
+        if (frameNumber < byFrame.length && byFrame[frameNumber] != null) {
+            for (final Subscription subscription : byFrame[frameNumber]) {
+                subscription.markDirty();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the sample and records its authority.
+     */
+    boolean insertData(final TransformCache frame, final TransformInternal data, final String authority) {
+        final long usage = memoryBudget > 0 ? frame.getMemoryUsage() : 0;
+        if (!frame.insertData(data)) {
+            return false;
+        }
+        if (memoryBudget > 0 && frame.getMemoryUsage() != usage) {
+            synchronized (memoryBudgetLock) {
+                account(frame);
+            }
+        }
+        if (frame instanceof TransformCacheStatic) {
+            staticVersion.incrementAndGet();
+        }
+        if (authority != null) {
+            frameAuthority.put(data.child_frame_id, authority);
+        }
+        return true;
+    }
+
+    /**
+     * Creates the cache of a frame that receives its first sample.
+     *
+     * @param frameId the name of the frame, selects its settings in the
+     * configuration.
+     */
+    TransformCache allocateCache(String frameId, boolean isStatic) {
+        if (isStatic) {
+            return new TransformCacheStatic();
+        }
+        final long frameCacheTime = config.getCacheTime(frameId);
+        final int maxSamples = config.getMaxSamples(frameId);
+        final InterpolationType interpolationType = config.getInterpolationType(frameId);
+        final TransformCache cache;
+        switch (cacheType) {
+            case LIST:
+                cache = new TransformCacheImpl(frameCacheTime, maxSamples, maxExtrapolation, interpolationType, nearestTolerance);
+                break;
+            case RING_BUFFER:
+            default:
+                cache = new TransformCacheRingBuffer(frameCacheTime, maxSamples, config.getPrecision(frameId), maxExtrapolation, interpolationType, nearestTolerance);
+                break;
+        }
+        if (memoryBudget > 0) {
+            synchronized (memoryBudgetLock) {
+                account(cache);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Cache whose history may be shortened to meet the memory budget.
+     */
+    private static final class EvictionCandidate {
+
+        private final TransformCache frame;
+        private final FrameMemory memory;
+        private final boolean queried;
+
+        private EvictionCandidate(TransformCache frame, FrameMemory memory) {
+            this.frame = frame;
+            this.memory = memory;
+            this.queried = frame.pollQueried();
+        }
+    }
+
+    /**
+     * Updates the usage with the current bytes of the cache. Requires the
+     * budget lock.
+     */
+    private FrameMemory account(TransformCache frame) {
+        final FrameMemory memory = frameMemory.computeIfAbsent(frame, key -> new FrameMemory());
+        final long bytes = frame.getMemoryUsage();
+        memoryUsage += bytes - memory.accounted;
+        memory.accounted = bytes;
+        return memory;
+    }
+
+    /**
+     * Updates the thresholds after the usage or the limits changed. Limited
+     * histories are only relaxed while the usage stays below half of the
+     * budget, so relaxing does not immediately lead to another eviction.
+     * Requires the budget lock.
+     */
+    private void updateMemoryThresholds() {
+        memoryThreshold = Math.max(memoryBudget, memoryUsage);
+        long smallest = Long.MAX_VALUE;
+        for (final FrameMemory memory : frameMemory.values()) {
+            if (memory.limited) {
+                smallest = Math.min(smallest, memory.accounted);
+            }
+        }
+        relaxThreshold = smallest == Long.MAX_VALUE ? Long.MIN_VALUE : memoryBudget / 2 - smallest;
+    }
+
+    /**
+     * Recounts the memory of all histories and, while it exceeds the budget,
+     * halves the history of the largest frame that was not looked up since
+     * the previous enforcement, then of the largest frame that was. The
+     * largest histories belong to the frames with the highest rates relative
+     * to their cache time.
+     */
+    private void enforceMemoryBudget() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            synchronized (memoryBudgetLock) {
+                final PriorityQueue<EvictionCandidate> candidates = new PriorityQueue<>((a, b)
+                        -> a.queried != b.queried ? Boolean.compare(a.queried, b.queried) : Long.compare(b.memory.accounted, a.memory.accounted));
+                for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                    final TransformCache frame = graph.getFrame(counter);
+                    if (frame.isValid()) {
+                        candidates.add(new EvictionCandidate(frame, account(frame)));
+                    }
+                }
+                while (memoryUsage > memoryBudget && !candidates.isEmpty()) {
+                    final EvictionCandidate candidate = candidates.poll();
+                    if (candidate.frame.limitSamples(candidate.frame.getListLength() / 2) > 0) {
+                        candidate.memory.limited = true;
+                        account(candidate.frame);
+                        candidates.add(candidate);
+                    }
+                }
+                if (memoryUsage > memoryBudget) {
+                    LOGGER.warn("Memory budget of " + memoryBudget + " bytes is exceeded by the latest samples of all frames: " + memoryUsage + " bytes");
+                }
+                updateMemoryThresholds();
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    /**
+     * Doubles the sample limits of shortened histories that reached their
+     * limit while their current size fits below half of the budget, so
+     * histories are restored once the pressure goes away, e.g. because other
+     * frames slowed down. A history whose limit reaches its configured
+     * maximum is no longer limited.
+     */
+    private void relaxMemoryLimits() {
+        synchronized (memoryBudgetLock) {
+            long reserved = memoryUsage;
+            for (final Map.Entry<TransformCache, FrameMemory> entry : frameMemory.entrySet()) {
+                final FrameMemory memory = entry.getValue();
+                if (!memory.limited || reserved + memory.accounted > memoryBudget / 2) {
+                    continue;
+                }
+                final TransformCache frame = entry.getKey();
+                final int limit = frame.getSampleLimit();
+                if (frame.getListLength() < limit) {
+                    // the history did not reach the last relaxed limit yet
+                    continue;
+                }
+                final int relaxed = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : limit * 2;
+                frame.limitSamples(relaxed);
+                memory.limited = relaxed < Integer.MAX_VALUE && frame.getSampleLimit() == relaxed;
+                // the history may grow by its current size
+                reserved += memory.accounted;
+            }
+            updateMemoryThresholds();
+        }
+    }
+
+    /**
+     * Lifts all limits and recounts the usage, e.g. after the histories were
+     * cleared.
+     */
+    private void resetMemoryLimits(FrameGraph graph) {
+        synchronized (memoryBudgetLock) {
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                final TransformCache frame = graph.getFrame(counter);
+                if (frame.isValid()) {
+                    final FrameMemory memory = account(frame);
+                    if (memory.limited) {
+                        frame.limitSamples(Integer.MAX_VALUE);
+                        memory.limited = false;
+                    }
+                }
+            }
+            updateMemoryThresholds();
+        }
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            long usage = 0;
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                usage += graph.getFrame(counter).getMemoryUsage();
+            }
+            return usage;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getFrameMemoryUsage() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            final Map<String, Long> usage = new HashMap<>();
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                final TransformCache frame = graph.getFrame(counter);
+                if (frame.isValid()) {
+                    usage.put(graph.getFrameName(counter), frame.getMemoryUsage());
+                }
+            }
+            return usage;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public Transform lookupTransform(String targetFrame, String sourceFrame, long time) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                if (targetFrame.equals(sourceFrame)) {
+
+                    long newTime;
+                    if (time == 0) {
+                        int targetId = lookupFrameNumber(graph, targetFrame);
+                        TransformCache cache = graph.getFrame(targetId);
+                        if (cache.isValid()) {
+                            newTime = cache.getLatestTimestamp();
+                        } else {
+                            newTime = time;
+                        }
+                    } else {
+                        newTime = time;
+                    }
+
+                    return new Transform(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 1.0, targetFrame, sourceFrame, newTime);
+                }
+
+                return lookupTransformNoLock(graph, targetFrame, sourceFrame, time);
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public void lookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                if (targetFrame.equals(sourceFrame)) {
+
+                    long newTime;
+                    if (time == 0) {
+                        int targetId = lookupFrameNumber(graph, targetFrame);
+                        TransformCache cache = graph.getFrame(targetId);
+                        if (cache.isValid()) {
+                            newTime = cache.getLatestTimestamp();
+                        } else {
+                            newTime = time;
+                        }
+                    } else {
+                        newTime = time;
+                    }
+
+                    result.setIdentity(targetFrame, sourceFrame, newTime);
+                    return;
+                }
+
+                lookupTransformNoLock(graph, targetFrame, sourceFrame, time, result);
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public Transform lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                final TransformAccumImpl accum = lookupAccum(graph, targetFrame, sourceFrame, time);
+                return accum.toTransform(targetFrame.getName(), sourceFrame.getName());
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public void lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                final TransformAccumImpl accum = lookupAccum(graph, targetFrame, sourceFrame, time);
+                accum.get(result, targetFrame.getName(), sourceFrame.getName());
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public LookupStatus tryLookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result) {
+        final FrameGraph graph = acquireGraph();
+        try {
+            final int targetId = graph.getFrameNumber(targetFrame);
+            if (targetFrame.equals(sourceFrame)) {
+                return tryLookupIdentity(graph, targetId, targetFrame, sourceFrame, time, result);
+            }
+            final int sourceId = graph.getFrameNumber(sourceFrame);
+            return tryLookupNoLock(graph, targetId, sourceId, targetFrame, sourceFrame, time, result);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public LookupStatus tryLookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result) {
+        final FrameGraph graph = acquireGraph();
+        try {
+            final int targetId = resolveFrameNumber(graph, targetFrame);
+            if (targetFrame == sourceFrame) {
+                return tryLookupIdentity(graph, targetId, targetFrame.getName(), sourceFrame.getName(), time, result);
+            }
+            final int sourceId = resolveFrameNumber(graph, sourceFrame);
+            return tryLookupNoLock(graph, targetId, sourceId, targetFrame.getName(), sourceFrame.getName(), time, result);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    private LookupStatus tryLookupIdentity(FrameGraph graph, int frameId, String targetFrame, String sourceFrame, long time, MutableTransform result) {
+        long newTime = time;
+        if (time == 0) {
+            if (frameId < 0) {
+                return LookupStatus.UNKNOWN_FRAME;
+            }
+            final TransformCache cache = graph.getFrame(frameId);
+            if (cache.isValid()) {
+                newTime = cache.getLatestTimestamp();
+            }
+        }
+        result.setIdentity(targetFrame, sourceFrame, newTime);
+        return LookupStatus.OK;
+    }
+
+    private LookupStatus tryLookupNoLock(FrameGraph graph, int targetId, int sourceId, String targetFrame, String sourceFrame, long time, MutableTransform result) {
+        if (targetId < 0 || sourceId < 0) {
+            return LookupStatus.UNKNOWN_FRAME;
+        }
+        final LookupStatus status = tryLookupAccum(graph, targetId, sourceId, time);
+        if (status == LookupStatus.OK) {
+            lookupContext.get().accum.get(result, targetFrame, sourceFrame);
+        }
+        return status;
+    }
+
+    @Override
+    public Pose lookupPose(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                return lookupAccum(graph, targetFrame, sourceFrame, time).toPose(targetFrame, sourceFrame);
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not lookup transformation", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public TransformCursor openCursor(FrameHandle targetFrame, FrameHandle sourceFrame) {
+        return new TimeCursor(targetFrame, sourceFrame);
+    }
+
+    @Override
+    public Transform[] lookupTransforms(String targetFrame, String[] sourceFrames, long time) throws TransformerException {
+        final Transform[] results = new Transform[sourceFrames.length];
+        final FrameGraph graph = acquireGraph();
+        try {
+            final int targetId = validateFrameId(graph, "lookupTransforms argument target_frame", targetFrame);
+            final RootPoses poses = resetRootPoses(graph, targetId, time);
+            for (int i = 0; i < sourceFrames.length; i++) {
+                final int sourceId = validateFrameId(graph, "lookupTransforms argument source_frames", sourceFrames[i]);
+                final TransformAccumImpl accum = lookupBatchAccum(graph, poses, targetId, sourceId, time);
+                results[i] = accum.toTransform(targetFrame, sourceFrames[i]);
+            }
+            return results;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public void lookupTransforms(FrameHandle targetFrame, FrameHandle[] sourceFrames, long time, MutableTransform[] results) throws TransformerException {
+        if (results.length < sourceFrames.length) {
+            throw new TransformerException("Only " + results.length + " results for " + sourceFrames.length + " source frames");
+        }
+        final FrameGraph graph = acquireGraph();
+        try {
+            final int targetId = validateFrameHandle(graph, "lookupTransforms argument target_frame", targetFrame);
+            final RootPoses poses = resetRootPoses(graph, targetId, time);
+            for (int i = 0; i < sourceFrames.length; i++) {
+                final int sourceId = validateFrameHandle(graph, "lookupTransforms argument source_frames", sourceFrames[i]);
+                final TransformAccumImpl accum = lookupBatchAccum(graph, poses, targetId, sourceId, time);
+                accum.get(results[i], targetFrame.getName(), sourceFrames[i].getName());
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public FramePoses lookupFramePoses(long time) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            final int frameCount = graph.getFrameCount();
+            final FrameHandle[] frames = new FrameHandle[frameCount - 1];
+            for (int frame = 1; frame < frameCount; frame++) {
+                frames[frame - 1] = FrameHandle.of(graph.getFrameName(frame));
+            }
+
+            // every frame reuses the composed pose of its parent
+            final RootPoses poses = lookupContext.get().rootPoses;
+            poses.reset(frameCount, time);
+            final FrameHandle[] roots = new FrameHandle[frames.length];
+            final double[] values = new double[frames.length * PoseMath.STRIDE];
+            for (int frame = 1; frame < frameCount; frame++) {
+                roots[frame - 1] = frames[poses.resolve(graph, frame) - 1];
+                poses.getPose(frame, values, (frame - 1) * PoseMath.STRIDE);
+            }
+            return new FramePoses(frames, roots, values, time);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    /**
+     * Prepares the root poses of the calling thread for a batch at a fixed
+     * time and resolves the target once.
+     *
+     * @return the root poses or null if the batch is looked up at the latest
+     * time, which differs per source.
+     */
+    private RootPoses resetRootPoses(FrameGraph graph, int targetId, long time) throws TransformerException {
+        if (time == 0) {
+            return null;
+        }
+        final RootPoses poses = lookupContext.get().rootPoses;
+        poses.reset(graph.getFrameCount(), time);
+        poses.resolve(graph, targetId);
+        return poses;
+    }
+
+    /**
+     * Looks up one source of a batch. At a fixed time the chains to the root
+     * are shared by all sources of the batch, the latest time falls back to
+     * the regular walk.
+     */
+    private TransformAccumImpl lookupBatchAccum(FrameGraph graph, RootPoses poses, int targetId, int sourceId, long time) throws TransformerException {
+        if (poses == null || sourceId == targetId) {
+            return lookupAccum(graph, targetId, sourceId, time);
+        }
+        if (poses.resolve(graph, sourceId) != poses.resolve(graph, targetId)) {
+            throw new TransformerException("No matching transform found", notConnected(graph, targetId, sourceId));
+        }
+        final TransformAccumImpl accum = lookupContext.get().accum;
+        accum.reset();
+        accum.finalize(poses, sourceId, targetId, time);
+        return accum;
+    }
+
+    private TransformAccumImpl lookupAccum(FrameGraph graph, FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException {
+        if (targetFrame == sourceFrame) {
+            final TransformAccumImpl accum = lookupContext.get().accum;
+            accum.reset();
+            long newTime = time;
+            if (time == 0) {
+                TransformCache cache = graph.getFrame(validateFrameHandle(graph, "lookupTransform argument target_frame", targetFrame));
+                if (cache.isValid()) {
+                    newTime = cache.getLatestTimestamp();
+                }
+            }
+            accum.finalize(WalkEnding.Identity, newTime);
+            return accum;
+        }
+
+        int targetId = validateFrameHandle(graph, "lookupTransform argument target_frame", targetFrame);
+        int sourceId = validateFrameHandle(graph, "lookupTransform argument source_frame", sourceFrame);
+        return lookupAccum(graph, targetId, sourceId, time);
+    }
+
+    /**
+     * Maps a frame handle to the number of the frame in the given tree.
+     *
+     * @return the frame number or -1 if the frame is unknown.
+     */
+    int resolveFrameNumber(FrameGraph graph, FrameHandle handle) {
+        final int index = handle.getIndex();
+        final int[] frames = handleFrames;
+        if (index < frames.length) {
+            final int frameNumber = frames[index];
+            final FrameHandle[] handles = frameHandles;
+            // a frame published after the given tree was acquired is unknown
+            if (frameNumber != 0 && frameNumber < graph.getFrameCount()
+                    && frameNumber < handles.length && handles[frameNumber] == handle) {
+                return frameNumber;
+            }
+        }
+
+        final int frameNumber = graph.getFrameNumber(handle.getName());
+        if (frameNumber > 0) {
+            synchronized (this) {
+                if (frameNumber >= frameHandles.length) {
+                    frameHandles = Arrays.copyOf(frameHandles, Math.max(frameHandles.length << 1, frameNumber + 1));
+                }
+                frameHandles[frameNumber] = handle;
+                if (index >= handleFrames.length) {
+                    handleFrames = Arrays.copyOf(handleFrames, Math.max(handleFrames.length << 1, index + 1));
+                }
+                handleFrames[index] = frameNumber;
+            }
+        }
+        return frameNumber;
+    }
+
+    private int validateFrameHandle(FrameGraph graph, String functionNameArg, FrameHandle handle) throws TransformerException {
+        final int frameNumber = resolveFrameNumber(graph, handle);
+        if (frameNumber < 0) {
+            throw new TransformerException("\"" + handle.getName() + "\" passed to " + functionNameArg + " does not exist. ");
+        }
+        return frameNumber;
+    }
+
+    private Transform lookupTransformNoLock(FrameGraph graph, String targetFrame, String sourceFrame, long time) throws TransformerException {
+
+        // Identify case does not need to be validated above
+        int targetId = validateFrameId(graph, "lookupTransform argument target_frame", targetFrame);
+        int sourceId = validateFrameId(graph, "lookupTransform argument source_frame", sourceFrame);
+
+        final TransformAccumImpl accum = lookupAccum(graph, targetId, sourceId, time);
+        return accum.toTransform(targetFrame, sourceFrame);
+    }
+
+    private void lookupTransformNoLock(FrameGraph graph, String targetFrame, String sourceFrame, long time, MutableTransform result) throws TransformerException {
+
+        // Identify case does not need to be validated above
+        int targetId = validateFrameId(graph, "lookupTransform argument target_frame", targetFrame);
+        int sourceId = validateFrameId(graph, "lookupTransform argument source_frame", sourceFrame);
+
+        final TransformAccumImpl accum = lookupAccum(graph, targetId, sourceId, time);
+        accum.get(result, targetFrame, sourceFrame);
+    }
+
+    /**
+     * Walks the tree with the accumulator of the calling thread. The returned
+     * accumulator is only valid until the next lookup on the same thread.
+     */
+    private TransformAccumImpl lookupAccum(FrameGraph graph, int targetId, int sourceId, long time) throws TransformerException {
+        final LookupStatus status = tryLookupAccum(graph, targetId, sourceId, time);
+        if (status != LookupStatus.OK) {
+            throw new TransformerException("No matching transform found", lookupFailed(status, graph, targetId, sourceId, time));
+        }
+        return lookupContext.get().accum;
+    }
+
+    /**
+     * Walks the tree with the accumulator of the calling thread and leaves
+     * the result in it if the returned status is {@link LookupStatus#OK}.
+     */
+    private LookupStatus tryLookupAccum(FrameGraph graph, int targetId, int sourceId, long time) {
+        final LookupContext context = lookupContext.get();
+        final TransformAccumImpl accum = context.accum;
+        accum.reset();
+        if (time == 0 && sourceId != targetId) {
+            final long latestTime = latestPoses.lookup(graph, targetId, sourceId, context.latestPoses);
+            if (latestTime != LatestPoses.MISS) {
+                accum.finalize(context.latestPoses, latestTime);
+                return LookupStatus.OK;
+            }
+        }
+        return walk(graph, accum, time, targetId, sourceId);
+    }
+
+    private void walkToTopParent(FrameGraph graph, TransformAccum f, long time, int targetId, int sourceId) throws TransformerException {
+        final LookupStatus status = walk(graph, f, time, targetId, sourceId);
+        if (status != LookupStatus.OK) {
+            throw lookupFailed(status, graph, targetId, sourceId, time);
+        }
+    }
+
+    /**
+     * Walks the tree from source and target up to their common parent,
+     * accumulating the transforms on the way. Failures are reported by the
+     * returned status, so the walk does not create exceptions or strings.
+     */
+    private LookupStatus walk(FrameGraph graph, TransformAccum f, long time, int targetId, int sourceId) {
+        // Short circuit if zero length transform to allow lookups on non
+        // existant links
+        if (sourceId == targetId) {
+            f.finalize(WalkEnding.Identity, time);
+            return LookupStatus.OK;
+        }
+        // Gather along the memoized path as long as the tree at the requested
+        // time matches the latest topology
+        final FramePath path = lookupPath(graph, targetId, sourceId);
+        if (path != null) {
+            if (time == 0) {
+                time = getLatestCommonTime(graph, path);
+            }
+            if (walkPath(graph, path, f, time)) {
+                return LookupStatus.OK;
+            }
+            f.reset();
+        } else if (time == 0 && graph.getAncestorIndex().getCommonAncestor(targetId, sourceId, graph.getTopologyVersion()) == 0) {
+            return LookupStatus.NOT_CONNECTED;
+        }
+
+        // If getting the latest get the latest common time
+        if (time == 0) {
+            time = getLatestCommonTime(graph, targetId, sourceId);
+            if (time == NOT_CONNECTED_TIME) {
+                return LookupStatus.NOT_CONNECTED;
+            } else if (time == LOOP_TIME) {
+                return LookupStatus.LOOP;
+            }
+        }
+
+        // Walk the tree to its root from the source frame, accumulating the
+        // transform
+        int frame = sourceId;
+        int topParent = frame;
+        int depth = 0;
+
+        // reason why the source walk stopped below the root, if any
+        LookupStatus sourceStatus = null;
+        while (frame != 0) {
+            TransformCache cache = graph.getFrame(frame);
+
+            if (!cache.isValid()) {
+                // There will be no cache for the very root of the tree
+                topParent = frame;
+                break;
+            }
+
+            int parent = f.gather(cache, time);
+            if (parent == 0) {
+                // Just break out here... there may still be a path from source
+                // -> target
+                topParent = frame;
+                sourceStatus = missingData(cache, time);
+                break;
+            }
+
+            // Early out... target frame is a direct parent of the source frame
+            if (frame == targetId) {
+                f.finalize(WalkEnding.TargetParentOfSource, time);
+                return LookupStatus.OK;
+            }
+
+            f.accum(true);
+
+            topParent = frame;
+            frame = parent;
+
+            ++depth;
+            if (depth > MAX_GRAPH_DEPTH) {
+                return LookupStatus.LOOP;
+            }
+        }
+
+        // Now walk to the top parent from the target frame, accumulating its
+        // transform
+        frame = targetId;
+        depth = 0;
+        while (frame != topParent) {
+            TransformCache cache = graph.getFrame(frame);
+
+            if (!cache.isValid()) {
+                // reached the root of the target without meeting the source
+                return sourceStatus != null ? sourceStatus : LookupStatus.NOT_CONNECTED;
+            }
+
+            int parent = f.gather(cache, time);
+            if (parent == 0) {
+                return missingData(cache, time);
+            }
+
+            // Early out... source frame is a direct parent of the target frame
+            if (frame == sourceId) {
+                f.finalize(WalkEnding.SourceParentOfTarget, time);
+                return LookupStatus.OK;
+            }
+
+            f.accum(false);
+            frame = parent;
+            ++depth;
+            if (depth > MAX_GRAPH_DEPTH) {
+                return LookupStatus.LOOP;
+            }
+        }
+
+        f.finalize(WalkEnding.FullPath, time);
+        return LookupStatus.OK;
+    }
+
+    /**
+     * Tells why a cache provides no data at the given time.
+     */
+    private static LookupStatus missingData(TransformCache cache, long time) {
+        if (cache.getListLength() == 0) {
+            return LookupStatus.NO_DATA;
+        }
+        if (time != 0 && time < cache.getOldestTimestamp()) {
+            return LookupStatus.EXTRAPOLATION_PAST;
+        }
+        if (time > cache.getLatestTimestamp()) {
+            return LookupStatus.EXTRAPOLATION_FUTURE;
+        }
+        // the history changed in between
+        return LookupStatus.NO_DATA;
+    }
+
+    /**
+     * Builds the exception of the throwing API for a failed walk.
+     */
+    private TransformerException lookupFailed(LookupStatus status, FrameGraph graph, int targetId, int sourceId, long time) throws TransformerException {
+        switch (status) {
+            case NOT_CONNECTED:
+                return notConnected(graph, targetId, sourceId);
+            case LOOP:
+                return new TransformerException("The tf tree is invalid because it contains a loop." + allFramesAsStringNoLock(graph));
+            case EXTRAPOLATION_PAST:
+                return new TransformerException("Lookup would require extrapolation into the past at time " + time
+                        + ", when looking up transform from frame [" + lookupFrameString(graph, sourceId) + "] to frame [" + lookupFrameString(graph, targetId) + "]");
+            case EXTRAPOLATION_FUTURE:
+                return new TransformerException("Lookup would require extrapolation into the future at time " + time
+                        + ", when looking up transform from frame [" + lookupFrameString(graph, sourceId) + "] to frame [" + lookupFrameString(graph, targetId) + "]");
+            default:
+                return new TransformerException("No data when looking up transform from frame [" + lookupFrameString(graph, sourceId) + "] to frame [" + lookupFrameString(graph, targetId) + "]");
+        }
+    }
+
+    /**
+     * Returns the memoized path between the frames, resolving it if the
+     * topology of the tree has changed since it was memoized.
+     *
+     * @return the path or null if the frames are not connected.
+     */
+    private FramePath lookupPath(FrameGraph graph, int targetId, int sourceId) {
+        final long topologyVersion = graph.getTopologyVersion();
+        final int slot = (targetId * 0x9E3779B1 + sourceId) & (PATH_MEMO_SIZE - 1);
+        FramePath path = pathMemo[slot];
+        if (path != null && path.matches(targetId, sourceId, topologyVersion)) {
+            return path;
+        }
+        path = FramePath.resolve(graph, targetId, sourceId, MAX_GRAPH_DEPTH);
+        if (path != null) {
+            pathMemo[slot] = path;
+        }
+        return path;
+    }
+
+    /**
+     * Gathers the transforms along a memoized path.
+     *
+     * @return false if a frame on the path has a different parent at the
+     * given time or no data. The accumulator then holds partial results.
+     */
+    private boolean walkPath(FrameGraph graph, FramePath path, TransformAccum f, long time) {
+        final FramePath.StaticRuns staticRuns = path.hasStaticRuns ? getStaticRuns(graph, path) : null;
+        if (!walkChain(graph, path.sourceChain, path.sourceRunEnds, staticRuns == null ? null : staticRuns.source, path.ancestor, true, f, time)) {
+            return false;
+        }
+        if (!walkChain(graph, path.targetChain, path.targetRunEnds, staticRuns == null ? null : staticRuns.target, path.ancestor, false, f, time)) {
+            return false;
+        }
+
+        if (path.targetChain.length == 0) {
+            f.finalize(WalkEnding.TargetParentOfSource, time);
+        } else if (path.sourceChain.length == 0) {
+            f.finalize(WalkEnding.SourceParentOfTarget, time);
+        } else {
+            f.finalize(WalkEnding.FullPath, time);
+        }
+        return true;
+    }
+
+    private boolean walkChain(FrameGraph graph, int[] chain, int[] runEnds, TransformInternal[] runs, int ancestor, boolean source, TransformAccum f, long time) {
+        int i = 0;
+        while (i < chain.length) {
+            if (runs != null && runEnds[i] != i) {
+                // run of static frames, composed in advance
+                if (runs[i] == null) {
+                    return false;
+                }
+                f.accum(source, runs[i]);
+                i = runEnds[i];
+                continue;
+            }
+            final TransformCache cache = graph.getFrame(chain[i]);
+            final int expectedParent = i + 1 < chain.length ? chain[i + 1] : ancestor;
+            if (!cache.isValid() || f.gather(cache, time) != expectedParent) {
+                return false;
+            }
+            f.accum(source);
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the static runs of the path, composing them again if a static
+     * frame was published since they were composed.
+     */
+    private FramePath.StaticRuns getStaticRuns(FrameGraph graph, FramePath path) {
+        final long version = staticVersion.get();
+        FramePath.StaticRuns staticRuns = path.staticRuns;
+        if (staticRuns == null || staticRuns.staticVersion != version) {
+            staticRuns = new FramePath.StaticRuns(version,
+                    composeStaticRuns(graph, path.sourceChain, path.sourceRunEnds, path.ancestor),
+                    composeStaticRuns(graph, path.targetChain, path.targetRunEnds, path.ancestor));
+            path.staticRuns = staticRuns;
+        }
+        return staticRuns;
+    }
+
+    /**
+     * Composes every run of static frames of a chain into one transform. A
+     * run is left out if one of its frames is not connected to the next frame
+     * of the chain.
+     */
+    private static TransformInternal[] composeStaticRuns(FrameGraph graph, int[] chain, int[] runEnds, int ancestor) {
+        final TransformInternal[] runs = new TransformInternal[chain.length];
+        final TransformInternal sample = new TransformInternal();
+        final double[] step = new double[PoseMath.STRIDE];
+        final double[] run = new double[PoseMath.STRIDE];
+        for (int i = 0; i < chain.length; i++) {
+            if (runEnds[i] == i || (i > 0 && runEnds[i - 1] != i - 1)) {
+                continue;
+            }
+            final TransformInternal composed = new TransformInternal();
+            composed.child_frame_id = chain[i];
+            PoseMath.setIdentity(run, 0);
+            boolean connected = true;
+            for (int k = i; k < runEnds[i]; k++) {
+                final int expectedParent = k + 1 < chain.length ? chain[k + 1] : ancestor;
+                graph.getFrame(chain[k]).getData(0, sample);
+                if (sample.frame_id != expectedParent) {
+                    connected = false;
+                    break;
+                }
+                PoseMath.set(step, 0, sample);
+                PoseMath.compose(step, 0, run, 0, run, 0);
+                composed.frame_id = expectedParent;
+            }
+            if (connected) {
+                composed.translation.set(run[0], run[1], run[2]);
+                composed.rotation.set(run[3], run[4], run[5], run[6]);
+                runs[i] = composed;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Latest time all frames on the path below the common ancestor have data
+     * for, 0 if none of them has a timestamp.
+     */
+    private long getLatestCommonTime(FrameGraph graph, FramePath path) {
+        long commonTime = Long.MAX_VALUE;
+        for (int frame : path.sourceChain) {
+            final long latestTime = graph.getFrame(frame).getLatestTimestamp();
+            if (latestTime != 0) {
+                commonTime = Math.min(latestTime, commonTime);
+            }
+        }
+        for (int frame : path.targetChain) {
+            final long latestTime = graph.getFrame(frame).getLatestTimestamp();
+            if (latestTime != 0) {
+                commonTime = Math.min(latestTime, commonTime);
+            }
+        }
+        return commonTime == Long.MAX_VALUE ? 0 : commonTime;
+    }
+
+    /**
+     * @return the latest time all frames between source and target have data
+     * for, {@link #NOT_CONNECTED_TIME} or {@link #LOOP_TIME}.
+     */
+    private long getLatestCommonTime(FrameGraph graph, int targetId, int sourceId) {
+        if (sourceId == targetId) {
+            TransformCache cache = graph.getFrame(sourceId);
+            // Set time to latest timestamp of frameid in case of target and
+            // source frame id are the same
+            if (cache.isValid()) {
+                return cache.getLatestTimestamp();
+            } else {
+                return 0;
+            }
+        }
+
+        final LookupContext context = lookupContext.get();
+        context.lctSize = 0;
+
+        // Walk the tree to its root from the source frame, accumulating the
+        // list of parent/time as well as the latest time
+        // in the target is a direct parent
+        int frame = sourceId;
+        int depth = 0;
+        long commonTime = Long.MAX_VALUE;
+        while (frame != 0) {
+            TransformCache cache = graph.getFrame(frame);
+
+            if (!cache.isValid()) {
+                // There will be no cache for the very root of the tree
+                break;
+            }
+
+            final int latestParent = cache.getLatestParent();
+            final long latestTime = cache.getLatestTimestamp();
+
+            if (latestParent == 0) {
+                // Just break out here... there may still be a path from source
+                // -> target
+                break;
+            }
+
+            if (latestTime != 0) {
+                commonTime = Math.min(latestTime, commonTime);
+            }
+
+            context.addLct(latestParent, latestTime);
+
+            frame = latestParent;
+
+            // Early out... target frame is a direct parent of the source frame
+            if (frame == targetId) {
+                long time = commonTime;
+                if (time == Long.MAX_VALUE) {
+                    time = 0;
+                }
+                return time;
+            }
+
+            ++depth;
+            if (depth > MAX_GRAPH_DEPTH) {
+                return LOOP_TIME;
+            }
+        }
+
+        // Now walk to the top parent from the target frame, accumulating the
+        // latest time and looking for a common parent
+        frame = targetId;
+        depth = 0;
+        commonTime = Long.MAX_VALUE;
+        int commonParent = 0;
+        while (true) {
+            TransformCache cache = graph.getFrame(frame);
+
+            if (!cache.isValid()) {
+                break;
+            }
+
+            final int latestParent = cache.getLatestParent();
+            final long latestTime = cache.getLatestTimestamp();
+
+            if (latestParent == 0) {
+                break;
+            }
+
+            if (latestTime != 0) {
+                commonTime = Math.min(latestTime, commonTime);
+            }
+
+            boolean found = false;
+            for (int i = 0; i < context.lctSize; i++) {
+                if (context.lctFrames[i] == latestParent) {
+                    found = true;
+                    break;
+                }
+            }
+            if (found) { // found a common parent
+                commonParent = latestParent;
+                break;
+            }
+
+            frame = latestParent;
+
+            // Early out... source frame is a direct parent of the target frame
+            if (frame == sourceId) {
+                long time = commonTime;
+                if (time == Long.MAX_VALUE) {
+                    time = 0;
+                }
+                return time;
+            }
+
+            ++depth;
+            if (depth > MAX_GRAPH_DEPTH) {
+                return LOOP_TIME;
+            }
+        }
+
+        if (commonParent == 0) {
+            return NOT_CONNECTED_TIME;
+        }
+
+        // Loop through the source -> root list until we hit the common parent
+        for (int i = 0; i < context.lctSize; i++) {
+            if (context.lctTimes[i] != 0) {
+                commonTime = Math.min(commonTime, context.lctTimes[i]);
+            }
+
+            if (context.lctFrames[i] == commonParent) {
+                break;
+            }
+        }
+
+        if (commonTime == Long.MAX_VALUE) {
+            commonTime = 0;
+        }
+
+        return commonTime;
+    }
+
+    private TransformerException notConnected(FrameGraph graph, int targetId, int sourceId) throws TransformerException {
+        return new TransformerException(
+                "Could not find a connection between '"
+                + lookupFrameString(graph, targetId) + "' and '"
+                + lookupFrameString(graph, sourceId)
+                + "' because they are not part of the same tree."
+                + "Tf has two or more unconnected trees.");
+    }
+
+    private String lookupFrameString(FrameGraph graph, int frameId) throws TransformerException {
+        final String frameName = graph.getFrameName(frameId);
+        if (frameName == null) {
+            throw new TransformerException("Reverse lookup of frame id " + frameId + " failed!");
+        }
+        return frameName;
+    }
+
+    private int lookupFrameNumber(FrameGraph graph, String frameId) throws TransformerException {
+        final int frameNumber = graph.getFrameNumber(frameId);
+        if (frameNumber < 0) {
+            throw new TransformerException("FrameId[" + frameId + "]");
+        }
+        return frameNumber;
+    }
+
+    private int validateFrameId(FrameGraph graph, String functionNameArg, String frameId) throws TransformerException {
+        if (frameId.isEmpty()) {
+            throw new TransformerException("Invalid argument passed to " + functionNameArg + " in tf2 frameIds cannot be empty");
+        }
+
+        if (frameId.startsWith("/")) {
+            throw new TransformerException("Invalid argument \"" + frameId + "\" passed to " + functionNameArg + " in tf2 frame_ids cannot start with a '/' like: ");
+        }
+
+        try {
+            return lookupFrameNumber(graph, frameId);
+        } catch (TransformerException ex) {
+            throw new TransformerException("\"" + frameId + "\" passed to " + functionNameArg + " does not exist. ", ex);
+        }
+    }
+
+    @Override
+    public Transform lookupTransform(String targetFrame, long targetTime, String sourceFrame, long sourceTime, String fixedFrame) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            validateFrameId(graph, "lookupTransform argument target_frame", targetFrame);
+            validateFrameId(graph, "lookupTransform argument source_frame", sourceFrame);
+            validateFrameId(graph, "lookupTransform argument fixed_frame", fixedFrame);
+        } finally {
+            releaseGraph(graph);
+        }
+
+        Transform temp1 = lookupTransform(fixedFrame, sourceFrame, sourceTime);
+        Transform temp2 = lookupTransform(targetFrame, fixedFrame, targetTime);
+
+        final double[] poses = new double[2 * PoseMath.STRIDE];
+        PoseMath.set(poses, 0, temp2);
+        PoseMath.set(poses, PoseMath.STRIDE, temp1);
+        PoseMath.compose(poses, 0, poses, PoseMath.STRIDE, poses, 0);
+
+        return new Transform(poses[0], poses[1], poses[2], poses[3], poses[4], poses[5], poses[6], targetFrame, sourceFrame, temp2.getTime());
+    }
+
+    @Override
+    public Future<Transform> requestTransform(final String targetFrame, final String sourceFrame, long time) {
+        return requestTransform(targetFrame, sourceFrame, time, 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    @Override
+    public Future<Transform> requestTransform(final FrameHandle targetFrame, final FrameHandle sourceFrame, long time) {
+        return requestTransform(targetFrame.getName(), sourceFrame.getName(), time);
+    }
+
+    @Override
+    public CompletableFuture<Transform> requestTransform(final String targetFrame, final String sourceFrame, long time, long timeout, TimeUnit unit, Executor executor) {
+        final FutureTransform future = new FutureTransform();
+        final TransformRequest request = new TransformRequest(targetFrame, sourceFrame, time, future, executor != null ? executor : SHARED_DELIVERY);
+        final ScheduledFuture<?> deadline;
+        if (timeout > 0) {
+            deadline = SHARED_TIMER.schedule(() -> {
+                pendingRequests.remove(request);
+                request.fail(new TimeoutException("Transformation from [" + sourceFrame + "] to [" + targetFrame + "] at " + time + " not available within " + timeout + " " + unit));
+            }, timeout, unit);
+        } else {
+            deadline = null;
+        }
+        // cancelled or timed out requests must not wait for a release
+        future.whenComplete((transform, ex) -> {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            pendingRequests.remove(request);
+        });
+
+        final long epoch = pendingRequests.getTopologyEpoch();
+        final Transform answer;
+        final FrameGraph graph = acquireGraph();
+        try {
+            answer = evaluateRequest(graph, request, epoch);
+        } finally {
+            releaseGraph(graph);
+        }
+        if (answer != null) {
+            request.complete(answer);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Transform> requestTransform(final FrameHandle targetFrame, final FrameHandle sourceFrame, long time, long timeout, TimeUnit unit, Executor executor) {
+        return requestTransform(targetFrame.getName(), sourceFrame.getName(), time, timeout, unit, executor);
+    }
+
+    /**
+     * @return the number of requests that are not answered yet.
+     */
+    public int getPendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    @Override
+    public TransformSubscription subscribeTransform(final String targetFrame, final String sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer) {
+        final Subscription subscription = new Subscription(this, targetFrame, sourceFrame, maxRate, SHARED_TIMER, executor != null ? executor : SHARED_DELIVERY, consumer);
+        subscriptions.add(subscription);
+        indexSubscriptions();
+        // deliver the current transform if it is available
+        subscription.markDirty();
+        return subscription;
+    }
+
+    @Override
+    public TransformSubscription subscribeTransform(final FrameHandle targetFrame, final FrameHandle sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer) {
+        return subscribeTransform(targetFrame.getName(), sourceFrame.getName(), maxRate, executor, consumer);
+    }
+
+    void unsubscribe(Subscription subscription) {
+        if (subscriptions.remove(subscription)) {
+            indexSubscriptions();
+        }
+    }
+
+    /**
+     * Publishes a new index of the subscriptions by the frames on their
+     * latest path.
+     */
+    private void indexSubscriptions() {
+        synchronized (subscriptions) {
+            final FrameGraph graph = acquireGraph();
+            try {
+                final Subscription[][] byFrame = new Subscription[graph.getFrameCount()][];
+                for (final Subscription subscription : subscriptions) {
+                    final int targetId = graph.getFrameNumber(subscription.targetFrame);
+                    final int sourceId = graph.getFrameNumber(subscription.sourceFrame);
+                    if (targetId <= 0 || sourceId <= 0 || targetId == sourceId) {
+                        continue;
+                    }
+                    final FramePath path = lookupPath(graph, targetId, sourceId);
+                    if (path == null) {
+                        continue;
+                    }
+                    for (final int frameNumber : path.sourceChain) {
+                        addSubscription(byFrame, frameNumber, subscription);
+                    }
+                    for (final int frameNumber : path.targetChain) {
+                        addSubscription(byFrame, frameNumber, subscription);
+                    }
+                }
+                subscriptionsByFrame = byFrame;
+            } finally {
+                releaseGraph(graph);
+            }
+        }
+    }
+
+    private static void addSubscription(Subscription[][] byFrame, int frameNumber, Subscription subscription) {
+        final Subscription[] previous = byFrame[frameNumber];
+        if (previous == null) {
+            byFrame[frameNumber] = new Subscription[]{subscription};
+        } else {
+            byFrame[frameNumber] = Arrays.copyOf(previous, previous.length + 1);
+            byFrame[frameNumber][previous.length] = subscription;
+        }
+    }
+
+    /**
+     * Method blocks until new transformation updates are available.
+     * @throws InterruptedException is thrown if the current thread is externally interrupted.
+     */
+    public void waitForTransformationUpdates(long timeout) throws InterruptedException {
+        synchronized (transformationFrameMapLock) {
+            transformationFrameMapLock.wait(timeout);
+        }
+    }
+
+    /**
+     * Method blocks until new transformation updates are available.
+     * @throws InterruptedException is thrown if the current thread is externally interrupted.
+     */
+    public void waitForTransformationUpdates() throws InterruptedException {
+        synchronized (transformationFrameMapLock) {
+            transformationFrameMapLock.wait();
+        }
+    }
+
+    /**
+     * Queues a pass over the released requests unless one is queued already.
+     */
+    private void scheduleCheckRequests() {
+        if (checkScheduled.compareAndSet(false, true)) {
+            requestChecker.execute(() -> {
+                // triggers from now on need another pass
+                checkScheduled.set(false);
+                checkRequests();
+            });
+        } else {
+            coalescedChecks.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of request checks that were merged into an already
+     * queued check.
+     */
+    public long getCoalescedRequestChecks() {
+        return coalescedChecks.get();
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void checkRequests() {
+        // only the requests released by insertions since the last check
+        final List<TransformRequest> ready = pendingRequests.drainReady();
+        if (ready.isEmpty()) {
+            return;
+        }
+        final long epoch = pendingRequests.getTopologyEpoch();
+        final Transform[] answers = new Transform[ready.size()];
+        final FrameGraph graph = acquireGraph();
+        try {
+            for (int i = 0; i < answers.length; i++) {
+                answers[i] = evaluateRequest(graph, ready.get(i), epoch);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+        // callbacks may change the frame tree
+        for (int i = 0; i < answers.length; i++) {
+            if (answers[i] != null) {
+                ready.get(i).complete(answers[i]);
+            }
+        }
+    }
+
+    /**
+     * Answers the request or parks it until an insertion that could answer
+     * it. Requests that are blocked by a frame without matching data are
+     * parked without a lookup attempt. The request is not completed here, so
+     * its callbacks do not run while the frame tree is held.
+     *
+     * @param epoch the topology epoch read before the graph was acquired.
+     * @return the answer of the request or null if it was parked or
+     * cancelled.
+     */
+    private Transform evaluateRequest(FrameGraph graph, TransformRequest request, long epoch) {
+        if (request.future.isDone()) {
+            // cancelled
+            return null;
+        }
+        final int targetId = graph.getFrameNumber(request.target_frame);
+        final int sourceId = graph.getFrameNumber(request.source_frame);
+        if (targetId < 0 || sourceId < 0) {
+            parkRequest(request, pendingRequests.parkOnTopology(request, epoch));
+            return null;
+        }
+        int retryFrame = sourceId;
+        if (targetId != sourceId) {
+            final FramePath path = lookupPath(graph, targetId, sourceId);
+            if (path == null) {
+                parkRequest(request, pendingRequests.parkOnTopology(request, epoch));
+                return null;
+            }
+            if (parkOnBlockingFrame(graph, request, epoch, path.sourceChain)
+                    || parkOnBlockingFrame(graph, request, epoch, path.targetChain)) {
+                return null;
+            }
+            retryFrame = path.sourceChain.length > 0 ? path.sourceChain[0] : path.targetChain[0];
+        }
+        if (tryLookupAccum(graph, targetId, sourceId, request.time) == LookupStatus.OK) {
+            return lookupContext.get().accum.toTransform(request.target_frame, request.source_frame);
+        }
+        // e.g. the tree was different at the requested time
+        LOGGER.debug("Request:" + request.source_frame + " -> " + request.target_frame + " still not available");
+        parkRequest(request, pendingRequests.parkOnData(request, epoch, retryFrame, Long.MIN_VALUE));
+        return null;
+    }
+
+    /**
+     * Parks the request on the first frame of the chain whose cache can not
+     * provide data at the requested time.
+     *
+     * @return true if the request was parked.
+     */
+    private boolean parkOnBlockingFrame(FrameGraph graph, TransformRequest request, long epoch, int[] chain) {
+        for (final int frameNumber : chain) {
+            final TransformCache cache = graph.getFrame(frameNumber);
+            final long time = getBlockingTime(cache, request.time);
+            if (time == Long.MAX_VALUE) {
+                continue;
+            }
+            parkRequest(request, pendingRequests.parkOnData(request, epoch, frameNumber, time));
+            // the data may have been inserted after the cache was checked
+            if (getBlockingTime(cache, request.time) == Long.MAX_VALUE && pendingRequests.dataInserted(frameNumber, Long.MAX_VALUE)) {
+                scheduleCheckRequests();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the minimal time of a sample that could provide data at the
+     * given time, Long.MIN_VALUE for any sample or Long.MAX_VALUE if the
+     * cache already provides data.
+     */
+    private static long getBlockingTime(TransformCache cache, long time) {
+        if (cache instanceof TransformCacheStatic) {
+            return Long.MAX_VALUE;
+        }
+        if (cache.getListLength() == 0 || (time != 0 && time < cache.getOldestTimestamp())) {
+            return Long.MIN_VALUE;
+        }
+        if (time > cache.getLatestTimestamp()) {
+            return time;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void parkRequest(TransformRequest request, boolean released) {
+        // completed while it was evaluated, the completion missed the request
+        if (request.future.isDone()) {
+            pendingRequests.remove(request);
+            return;
+        }
+        if (released) {
+            scheduleCheckRequests();
+        }
+    }
+
+    @Override
+    public boolean canTransform(String targetFrame, String sourceFrame, long time) {
+        if (targetFrame.equals(sourceFrame)) {
+            return true;
+        }
+
+        if (warnFrameId("canTransform argument target_frame", targetFrame)) {
+            return false;
+        }
+        if (warnFrameId("canTransform argument source_frame", sourceFrame)) {
+            return false;
+        }
+
+        final FrameGraph graph = acquireGraph();
+        try {
+            return canTransform(graph, targetFrame, sourceFrame, time);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    private boolean canTransform(FrameGraph graph, String targetFrame, String sourceFrame, long time) {
+        if (targetFrame.equals(sourceFrame)) {
+            return true;
+        }
+
+        return canTransformNoLock(graph, graph.getFrameNumber(targetFrame), graph.getFrameNumber(sourceFrame), time);
+    }
+
+    @Override
+    public boolean canTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) {
+        final FrameGraph graph = acquireGraph();
+        try {
+            return canTransform(graph, targetFrame, sourceFrame, time);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    private boolean canTransform(FrameGraph graph, FrameHandle targetFrame, FrameHandle sourceFrame, long time) {
+        if (targetFrame == sourceFrame) {
+            return true;
+        }
+        return canTransformNoLock(graph, resolveFrameNumber(graph, targetFrame), resolveFrameNumber(graph, sourceFrame), time);
+    }
+
+    @Override
+    public boolean canTransform(String targetFrame, long targetTime, String sourceFrame, long sourceTime, String fixedFrame) {
+        if (warnFrameId("canTransform argument target_frame", targetFrame)) {
+            return false;
+        }
+        if (warnFrameId("canTransform argument source_frame", sourceFrame)) {
+            return false;
+        }
+        if (warnFrameId("canTransform argument fixed_frame", fixedFrame)) {
+            return false;
+        }
+
+        return canTransform(targetFrame, fixedFrame, targetTime) && canTransform(fixedFrame, sourceFrame, sourceTime);
+    }
+
+    private boolean warnFrameId(String functionNameArg, String frameId) {
+        if (frameId.length() == 0) {
+            LOGGER.warn("Invalid argument passed to " + functionNameArg + " in tf2 frame_ids cannot be empty");
+            return true;
+        }
+
+        if (frameId.startsWith("/")) {
+            LOGGER.warn("Invalid argument \"" + frameId + "\" passed to " + functionNameArg + " in tf2 frame_ids cannot start with a '/' like: ");
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public Set<String> getFrameStrings() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            Set<String> vec = new HashSet<>();
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                vec.add(graph.getFrameName(counter));
+            }
+            return vec;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public boolean frameExists(String frameId) {
+        final FrameGraph graph = acquireGraph();
+        try {
+            return graph.getFrameNumber(frameId) >= 0;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public String getParent(String frameId, long time) throws TransformerException {
+        final FrameGraph graph = acquireGraph();
+        try {
+            try {
+                int frameNumber = lookupFrameNumber(graph, frameId);
+                TransformCache frame = graph.getFrame(frameNumber);
+
+                if (!frame.isValid()) {
+                    return "";
+                }
+
+                int parentId = frame.getParent(time);
+                if (parentId == 0) {
+                    return "";
+                }
+
+                return lookupFrameString(graph, parentId);
+            } catch (TransformerException ex) {
+                throw new TransformerException("Could not resolfe parent transformation!", ex);
+            }
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public String allFramesAsDot() {
+        String mstream = "";
+        mstream += "digraph G {\n";
+        final FrameGraph graph = acquireGraph();
+        try {
+
+            if (graph.getFrameCount() == 1) {
+                mstream += "\"no tf data recieved\"";
+            }
+
+            // one referenced for 0 is no frame
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                int frameId;
+                TransformCache counter_frame = graph.getFrame(counter);
+                if (!counter_frame.isValid()) {
+                    continue;
+                }
+                // the parent only, a lookup would count for the memory budget
+                frameId = counter_frame.getLatestParent();
+                if (frameId == 0) {
+                    continue;
+                }
+                String authority = "no recorded authority";
+                if (frameAuthority.containsKey(counter)) {
+                    authority = frameAuthority.get(counter);
+                }
+
+                double rate = counter_frame.getListLength()
+                        / Math.max(
+                                (counter_frame.getLatestTimestamp() / 1000.0 - counter_frame
+                                .getOldestTimestamp() / 1000.0), 0.0001);
+
+                mstream += "\""
+                        + graph.getFrameName(frameId)
+                        + "\" -> \""
+                        + graph.getFrameName(counter)
+                        + "\"[label=\"Broadcaster: "
+                        + authority
+                        + "\\nAverage rate: "
+                        + rate
+                        + " Hz\\nMost recent transform: "
+                        + (counter_frame.getLatestTimestamp())
+                        / 1000.0
+                        + " \\nBuffer length: "
+                        + (counter_frame.getLatestTimestamp() - counter_frame
+                        .getOldestTimestamp()) / 1000.0 + " sec\\n"
+                        + "\"];\n";
+            }
+
+            // one referenced for 0 is no frame
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                int frameId;
+                TransformCache counter_frame = graph.getFrame(counter);
+                if (!counter_frame.isValid()) {
+                    continue;
+                }
+                frameId = counter_frame.getLatestParent();
+
+                if (graph.getFrameName(frameId).equals("NO_PARENT")) {
+                    mstream += "edge [style=invis];\n";
+                    mstream += " subgraph cluster_legend { style=bold; color=black; label =\"view_frames Result\";\n"
+                            + "}->\"" + graph.getFrameName(counter) + "\";\n";
+                }
+            }
+            mstream += "}";
+            return mstream;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public String allFramesAsYAML() {
+        String mstream = "";
+        final FrameGraph graph = acquireGraph();
+        try {
+
+            if (graph.getFrameCount() == 1) {
+                mstream += "[]";
+            }
+
+            // for (std::vector< TimeCache*>::iterator it = frames_.begin(); it
+            // != frames_.end(); ++it)
+            for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+                // one referenced for 0 is no frame
+                int cfid = counter;
+                int frameId;
+                TransformCache cache = graph.getFrame(cfid);
+                if (!cache.isValid()) {
+                    continue;
+                }
+
+                frameId = cache.getLatestParent();
+                if (frameId == 0) {
+                    continue;
+                }
+
+                String authority = "no recorded authority";
+                if (frameAuthority.containsKey(cfid)) {
+                    authority = frameAuthority.get(cfid);
+                }
+
+                double rate = cache.getListLength()
+                        / Math.max((cache.getLatestTimestamp() / 1000.0 - cache
+                                .getOldestTimestamp() / 1000.0), 0.0001);
+
+                mstream += graph.getFrameName(cfid) + ": \n";
+                mstream += "  parent: '" + graph.getFrameName(frameId)
+                        + "'\n";
+                mstream += "  broadcaster: '" + authority + "'\n";
+                mstream += "  rate: " + rate + "\n";
+                mstream += "  most_recent_transform: "
+                        + (cache.getLatestTimestamp()) / 1000.0 + "\n";
+                mstream += "  oldest_transform: "
+                        + (cache.getOldestTimestamp()) / 1000.0 + "\n";
+                mstream += "  buffer_length: "
+                        + (cache.getLatestTimestamp() - cache
+                        .getOldestTimestamp()) / 1000.0 + "\n";
+            }
+
+            return mstream;
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    @Override
+    public String allFramesAsString() {
+        final FrameGraph graph = acquireGraph();
+        try {
+            return allFramesAsStringNoLock(graph);
+        } finally {
+            releaseGraph(graph);
+        }
+    }
+
+    private boolean canTransformNoLock(FrameGraph graph, int targetId, int sourceId, long time) {
+        if (targetId <= 0 || sourceId <= 0) {
+            return false;
+        }
+
+        if (targetId == sourceId) {
+            return true;
+        }
+
+        return walk(graph, lookupContext.get().accumDummy, time, targetId, sourceId) == LookupStatus.OK;
+    }
+
+    private String allFramesAsStringNoLock(FrameGraph graph) {
+
+        String mstring = "";
+        // /regular transforms
+        LOGGER.debug("frames size: " + graph.getFrameCount());
+        for (int counter = 1; counter < graph.getFrameCount(); counter++) {
+            TransformCache frame_ptr = graph.getFrame(counter);
+            LOGGER.debug("got frame: " + frame_ptr);
+            if (!frame_ptr.isValid()) {
+                continue;
+            }
+            final int frame_id_num = frame_ptr.getLatestParent();
+            mstring += "Frame " + graph.getFrameName(counter) + " exists with parent " + graph.getFrameName(frame_id_num) + ".\n";
+        }
+        return mstring;
+    }
+
+    @Override
+    public void newTransformAvailable(Transform transform, boolean isStatic) {
+        try {
+            setTransform(transform, isStatic);
+        } catch (TransformerException ex) {
+            LOGGER.error(ex.getMessage(), ex);
+        }
+    }
+}
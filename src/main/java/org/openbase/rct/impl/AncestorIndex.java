@@ -0,0 +1,320 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Lowest common ancestor index of the latest topology of a frame tree, based
+ * on binary lifting: for every frame the index stores its depth and its
+ * ancestors 1, 2, 4, ... levels above, so common ancestor queries take
+ * O(log depth). Frames without a parent hang below the virtual root 0, so
+ * frames of unconnected trees have the common ancestor 0.
+ * <p>
+ * The index is updated incrementally. A new parent only updates the frame
+ * and its subtree, which are found through child lists.
+ * <p>
+ * The index is thread safe. Updates take the write lock of a
+ * {@link StampedLock}, queries first try an optimistic read and only fall
+ * back to the read lock if an update interfered.
+ */
+final class AncestorIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Result of a query that cannot be answered by the index, e.g. because
+     * the index belongs to a different topology version.
+     */
+    static final int UNKNOWN = -1;
+
+    /**
+     * The index storage. Capacity and number of levels never change for an
+     * instance, growing replaces the whole table. Because of this, reading a
+     * table that is concurrently modified never leaves the array bounds.
+     */
+    private static final class Table {
+
+        private final int[] parents;
+        private final int[] depths;
+        private final int[][] ancestors;
+        private final int[] firstChild;
+        private final int[] nextSibling;
+
+        private Table(int capacity, int levels) {
+            parents = new int[capacity];
+            depths = new int[capacity];
+            ancestors = new int[levels][capacity];
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+        }
+
+        private int capacity() {
+            return parents.length;
+        }
+
+        private int levels() {
+            return ancestors.length;
+        }
+
+        private Table grow(int capacity, int levels) {
+            final Table grown = new Table(capacity, levels);
+            final int size = capacity();
+            System.arraycopy(parents, 0, grown.parents, 0, size);
+            System.arraycopy(depths, 0, grown.depths, 0, size);
+            System.arraycopy(firstChild, 0, grown.firstChild, 0, size);
+            System.arraycopy(nextSibling, 0, grown.nextSibling, 0, size);
+            for (int level = 0; level < levels(); level++) {
+                System.arraycopy(ancestors[level], 0, grown.ancestors[level], 0, size);
+            }
+            for (int level = levels(); level < levels; level++) {
+                for (int frame = 0; frame < size; frame++) {
+                    grown.ancestors[level][frame] = grown.ancestors[level - 1][grown.ancestors[level - 1][frame]];
+                }
+            }
+            return grown;
+        }
+
+        /**
+         * Recomputes depth and ancestors of a frame from its parent.
+         */
+        private void link(int frame) {
+            final int parent = parents[frame];
+            depths[frame] = depths[parent] + 1;
+            ancestors[0][frame] = parent;
+            for (int level = 1; level < ancestors.length; level++) {
+                ancestors[level][frame] = ancestors[level - 1][ancestors[level - 1][frame]];
+            }
+        }
+
+        private void addChild(int parent, int child) {
+            nextSibling[child] = firstChild[parent];
+            firstChild[parent] = child;
+        }
+
+        private void removeChild(int parent, int child) {
+            if (firstChild[parent] == child) {
+                firstChild[parent] = nextSibling[child];
+            } else {
+                int sibling = firstChild[parent];
+                while (nextSibling[sibling] != child) {
+                    sibling = nextSibling[sibling];
+                }
+                nextSibling[sibling] = nextSibling[child];
+            }
+            nextSibling[child] = 0;
+        }
+
+        private int getCommonAncestor(int a, int b) {
+            if (depths[a] < depths[b]) {
+                final int swap = a;
+                a = b;
+                b = swap;
+            }
+            for (int level = ancestors.length - 1; level >= 0; level--) {
+                if (depths[a] - (1 << level) >= depths[b]) {
+                    a = ancestors[level][a];
+                }
+            }
+            if (a == b) {
+                return a;
+            }
+            for (int level = ancestors.length - 1; level >= 0; level--) {
+                if (ancestors[level][a] != ancestors[level][b]) {
+                    a = ancestors[level][a];
+                    b = ancestors[level][b];
+                }
+            }
+            return ancestors[0][a];
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+
+    private Table table = new Table(INITIAL_CAPACITY, 1);
+    private int size = 1;
+    private long topologyVersion = 0;
+
+    /**
+     * Parents that were not applied because they would close a loop, 0 for
+     * all other frames. Such frames are kept as roots of the index.
+     */
+    private int[] detachedParents = new int[INITIAL_CAPACITY];
+    private int detachedCount = 0;
+
+    /**
+     * Adds a frame without parent.
+     *
+     * @param frame the frame number, the next one after all known frames.
+     * @param topologyVersion the topology version after the change.
+     */
+    void addFrame(int frame, long topologyVersion) {
+        final long stamp = lock.writeLock();
+        try {
+            ensureCapacity(frame + 1);
+            size = Math.max(size, frame + 1);
+            table.parents[frame] = 0;
+            table.addChild(0, frame);
+            table.link(frame);
+            this.topologyVersion = topologyVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the latest parent of a known frame and updates its subtree.
+     *
+     * @param frame the frame number.
+     * @param parent the new parent, 0 if the frame has no parent.
+     * @param topologyVersion the topology version after the change.
+     */
+    void setParent(int frame, int parent, long topologyVersion) {
+        final long stamp = lock.writeLock();
+        try {
+            if (detachedParents[frame] != 0) {
+                detachedParents[frame] = 0;
+                detachedCount--;
+            }
+            if (!attach(frame, parent)) {
+                detachedParents[frame] = parent;
+                detachedCount++;
+            }
+            // a changed parent may have opened loops that kept frames detached
+            for (int detached = 1; detachedCount > 0 && detached < size; detached++) {
+                if (detachedParents[detached] != 0 && attach(detached, detachedParents[detached])) {
+                    detachedParents[detached] = 0;
+                    detachedCount--;
+                }
+            }
+            this.topologyVersion = topologyVersion;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the lowest common ancestor of two frames.
+     *
+     * @param a the first frame.
+     * @param b the second frame.
+     * @param topologyVersion the topology version the caller works on.
+     * @return the common ancestor, 0 if the frames are not connected or
+     * {@link #UNKNOWN} if the index does not match the topology version or
+     * the tree contains a loop.
+     */
+    int getCommonAncestor(int a, int b, long topologyVersion) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int ancestor = getCommonAncestorUnlocked(a, b, topologyVersion);
+            if (lock.validate(stamp)) {
+                return ancestor;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return getCommonAncestorUnlocked(a, b, topologyVersion);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int getCommonAncestorUnlocked(int a, int b, long topologyVersion) {
+        final Table current = table;
+        if (this.topologyVersion != topologyVersion || detachedCount != 0
+                || a >= current.capacity() || b >= current.capacity()) {
+            return UNKNOWN;
+        }
+        return current.getCommonAncestor(a, b);
+    }
+
+    /**
+     * Moves the frame below the parent unless this closes a loop. Requires
+     * the write lock.
+     *
+     * @return false if the parent is part of the subtree of the frame.
+     */
+    private boolean attach(int frame, int parent) {
+        boolean loop = false;
+        for (int ancestor = parent; ancestor != 0; ancestor = table.parents[ancestor]) {
+            if (ancestor == frame) {
+                loop = true;
+                break;
+            }
+        }
+        final int applied = loop ? 0 : parent;
+        if (table.parents[frame] != applied) {
+            table.removeChild(table.parents[frame], frame);
+            table.parents[frame] = applied;
+            table.addChild(applied, frame);
+        }
+        relinkSubtree(frame);
+        return !loop;
+    }
+
+    /**
+     * Recomputes depth and ancestors of the frame and all its descendants,
+     * parents before children. Requires the write lock.
+     */
+    private void relinkSubtree(int root) {
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = root;
+        int maxDepth = 0;
+        while (top > 0) {
+            final int frame = stack[--top];
+            table.link(frame);
+            maxDepth = Math.max(maxDepth, table.depths[frame]);
+            for (int child = table.firstChild[frame]; child != 0; child = table.nextSibling[child]) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top << 1);
+                }
+                stack[top++] = child;
+            }
+        }
+        if (maxDepth >= (1 << table.levels())) {
+            // deeper than the lifting table reaches, add levels
+            int levels = table.levels();
+            while (maxDepth >= (1 << levels)) {
+                levels++;
+            }
+            table = table.grow(table.capacity(), levels);
+        }
+    }
+
+    /**
+     * Requires the write lock.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= table.capacity()) {
+            return;
+        }
+        int grown = table.capacity();
+        while (grown < capacity) {
+            grown <<= 1;
+        }
+        table = table.grow(grown, table.levels());
+        detachedParents = Arrays.copyOf(detachedParents, grown);
+    }
+}
@@ -0,0 +1,122 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AncestorIndexTest {
+
+	private static int naiveCommonAncestor(int[] parents, int a, int b) {
+		for (int x = a; x != 0; x = parents[x]) {
+			for (int y = b; y != 0; y = parents[y]) {
+				if (x == y) {
+					return x;
+				}
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isAncestor(int[] parents, int ancestor, int frame) {
+		for (int x = frame; x != 0; x = parents[x]) {
+			if (x == ancestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testRandomTreeWithReparenting() {
+		final Random random = new Random(42);
+		final int frames = 300;
+		final int[] parents = new int[frames + 1];
+		final AncestorIndex index = new AncestorIndex();
+		long version = 0;
+		for (int frame = 1; frame <= frames; frame++) {
+			index.addFrame(frame, ++version);
+			// a few separate trees
+			parents[frame] = frame % 50 == 1 ? 0 : 1 + random.nextInt(frame - 1);
+			index.setParent(frame, parents[frame], ++version);
+		}
+
+		for (int round = 0; round < 200; round++) {
+			// move a random subtree below a frame outside of it
+			final int frame = 1 + random.nextInt(frames);
+			int parent;
+			do {
+				parent = random.nextInt(frames + 1);
+			} while (parent != 0 && isAncestor(parents, frame, parent));
+			parents[frame] = parent;
+			index.setParent(frame, parent, ++version);
+
+			for (int query = 0; query < 50; query++) {
+				final int a = 1 + random.nextInt(frames);
+				final int b = 1 + random.nextInt(frames);
+				assertEquals(naiveCommonAncestor(parents, a, b), index.getCommonAncestor(a, b, version));
+			}
+		}
+		assertEquals(AncestorIndex.UNKNOWN, index.getCommonAncestor(1, 2, version - 1));
+	}
+
+	@Test
+	public void testDeepChain() {
+		final int depth = 1000;
+		final AncestorIndex index = new AncestorIndex();
+		for (int frame = 1; frame <= depth; frame++) {
+			index.addFrame(frame, frame);
+			index.setParent(frame, frame - 1, frame);
+		}
+		index.addFrame(depth + 1, depth + 1);
+		index.setParent(depth + 1, 500, depth + 1);
+		assertEquals(500, index.getCommonAncestor(depth, depth + 1, depth + 1));
+		assertEquals(1, index.getCommonAncestor(1, depth, depth + 1));
+		assertEquals(700, index.getCommonAncestor(700, depth, depth + 1));
+	}
+
+	@Test
+	public void testLoopIsDetached() {
+		final AncestorIndex index = new AncestorIndex();
+		for (int frame = 1; frame <= 4; frame++) {
+			index.addFrame(frame, frame);
+		}
+		index.setParent(2, 1, 5);
+		index.setParent(3, 2, 6);
+		index.setParent(4, 1, 7);
+		assertEquals(1, index.getCommonAncestor(3, 4, 7));
+
+		// 1 -> 3 closes the loop 1 -> 3 -> 2 -> 1
+		index.setParent(1, 3, 8);
+		assertEquals(AncestorIndex.UNKNOWN, index.getCommonAncestor(3, 4, 8));
+
+		// moving 2 to the root opens the loop again: 2 -> 3 -> 1 -> 4
+		index.setParent(2, 0, 9);
+		assertEquals(1, index.getCommonAncestor(1, 4, 9));
+		assertEquals(3, index.getCommonAncestor(3, 4, 9));
+		assertEquals(2, index.getCommonAncestor(2, 4, 9));
+	}
+}
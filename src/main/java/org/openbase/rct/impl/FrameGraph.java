@@ -0,0 +1,72 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * Read view of the frame tree a {@link TransformerCore} walks during
+ * lookups. Frame number 0 is reserved for the missing parent ("NO_PARENT").
+ */
+interface FrameGraph {
+
+    /**
+     * @return the number of known frames including the reserved frame 0.
+     */
+    int getFrameCount();
+
+    /**
+     * @param frameNumber the frame number.
+     * @return the cache of the frame or null for frame 0 and unknown numbers.
+     */
+    TransformCache getFrame(int frameNumber);
+
+    /**
+     * @param frameNumber the frame number.
+     * @return the name of the frame or null if the number is unknown.
+     */
+    String getFrameName(int frameNumber);
+
+    /**
+     * @param frameId the name of the frame.
+     * @return the frame number or -1 if the frame is unknown.
+     */
+    int getFrameNumber(String frameId);
+
+    /**
+     * @param frameNumber the frame number.
+     * @return the parent of the latest sample of the frame or 0 if the frame
+     * has no parent.
+     */
+    int getLatestParent(int frameNumber);
+
+    /**
+     * @return a version number that changes whenever a frame is added or the
+     * latest parent of a frame changes.
+     */
+    long getTopologyVersion();
+
+    /**
+     * @return the common ancestor index of the latest topology. It may
+     * already reflect a newer topology version than this view.
+     */
+    AncestorIndex getAncestorIndex();
+}
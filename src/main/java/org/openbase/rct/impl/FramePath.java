@@ -0,0 +1,213 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Path between two frames of a tree, resolved from the latest parents of the
+ * frames. The path is valid as long as the topology version of the tree it
+ * was resolved from does not change. Apart from the precomposed static runs,
+ * which are replaced as a whole, instances are immutable.
+ */
+final class FramePath {
+
+    /**
+     * Precomposed transforms of the static runs of a path, indexed by the
+     * position the run starts at in its chain.
+     */
+    static final class StaticRuns {
+
+        final long staticVersion;
+        final TransformInternal[] source;
+        final TransformInternal[] target;
+
+        StaticRuns(long staticVersion, TransformInternal[] source, TransformInternal[] target) {
+            this.staticVersion = staticVersion;
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    final int targetId;
+    final int sourceId;
+    final long topologyVersion;
+
+    /**
+     * Lowest common ancestor of source and target. It equals the target if
+     * the target is an ancestor of the source and vice versa.
+     */
+    final int ancestor;
+
+    /**
+     * Frames from the source up to the child of the ancestor.
+     */
+    final int[] sourceChain;
+
+    /**
+     * Frames from the target up to the child of the ancestor.
+     */
+    final int[] targetChain;
+
+    /**
+     * For every position of the source chain the end of the run of static
+     * frames that starts there. Positions that do not start a run of at least
+     * two static frames map to themselves.
+     */
+    final int[] sourceRunEnds;
+
+    /**
+     * Run ends of the target chain, see {@link #sourceRunEnds}.
+     */
+    final int[] targetRunEnds;
+
+    final boolean hasStaticRuns;
+
+    /**
+     * Precomposed static runs, null until the first walk along the path.
+     */
+    volatile StaticRuns staticRuns;
+
+    private FramePath(int targetId, int sourceId, long topologyVersion, int ancestor, int[] sourceChain, int[] targetChain, FrameGraph graph) {
+        this.targetId = targetId;
+        this.sourceId = sourceId;
+        this.topologyVersion = topologyVersion;
+        this.ancestor = ancestor;
+        this.sourceChain = sourceChain;
+        this.targetChain = targetChain;
+        this.sourceRunEnds = staticRunEnds(graph, sourceChain);
+        this.targetRunEnds = staticRunEnds(graph, targetChain);
+        this.hasStaticRuns = hasRuns(sourceRunEnds) || hasRuns(targetRunEnds);
+    }
+
+    boolean matches(int targetId, int sourceId, long topologyVersion) {
+        return this.targetId == targetId && this.sourceId == sourceId && this.topologyVersion == topologyVersion;
+    }
+
+    /**
+     * Resolves the path between two different frames.
+     *
+     * @param graph the frame tree.
+     * @param targetId the target frame.
+     * @param sourceId the source frame.
+     * @param maxDepth the maximum number of hops to the root.
+     * @return the path or null if the frames are not connected or the tree
+     * contains a loop.
+     */
+    static FramePath resolve(FrameGraph graph, int targetId, int sourceId, int maxDepth) {
+        final long topologyVersion = graph.getTopologyVersion();
+        final int ancestor = graph.getAncestorIndex().getCommonAncestor(targetId, sourceId, topologyVersion);
+        if (ancestor == 0) {
+            return null;
+        }
+        if (ancestor != AncestorIndex.UNKNOWN) {
+            final int[] sourceChain = chainToAncestor(graph, sourceId, ancestor, maxDepth);
+            final int[] targetChain = chainToAncestor(graph, targetId, ancestor, maxDepth);
+            if (sourceChain != null && targetChain != null) {
+                return new FramePath(targetId, sourceId, topologyVersion, ancestor, sourceChain, targetChain, graph);
+            }
+        }
+
+        // no index for this version, search the common ancestor
+        final int[] sourceToRoot = chainToRoot(graph, sourceId, maxDepth);
+        final int[] targetToRoot = chainToRoot(graph, targetId, maxDepth);
+        if (sourceToRoot == null || targetToRoot == null) {
+            return null;
+        }
+
+        for (int t = 0; t < targetToRoot.length; t++) {
+            for (int s = 0; s < sourceToRoot.length; s++) {
+                if (targetToRoot[t] == sourceToRoot[s]) {
+                    return new FramePath(targetId, sourceId, topologyVersion, targetToRoot[t],
+                            Arrays.copyOf(sourceToRoot, s),
+                            Arrays.copyOf(targetToRoot, t),
+                            graph);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int[] staticRunEnds(FrameGraph graph, int[] chain) {
+        final int[] runEnds = new int[chain.length];
+        int staticFrames = 0;
+        for (int i = chain.length - 1; i >= 0; i--) {
+            if (graph.getFrame(chain[i]) instanceof TransformCacheStatic) {
+                staticFrames++;
+            } else {
+                staticFrames = 0;
+            }
+            runEnds[i] = staticFrames >= 2 ? i + staticFrames : i;
+        }
+        return runEnds;
+    }
+
+    private static boolean hasRuns(int[] runEnds) {
+        for (int i = 0; i < runEnds.length; i++) {
+            if (runEnds[i] != i) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the frame followed by its ancestors below the given ancestor or
+     * null if the ancestor is not reached.
+     */
+    private static int[] chainToAncestor(FrameGraph graph, int frameId, int ancestor, int maxDepth) {
+        int[] chain = new int[8];
+        int size = 0;
+        for (int frame = frameId; frame != ancestor; frame = graph.getLatestParent(frame)) {
+            if (frame == 0 || size == maxDepth) {
+                return null;
+            }
+            if (size == chain.length) {
+                chain = Arrays.copyOf(chain, size << 1);
+            }
+            chain[size++] = frame;
+        }
+        return Arrays.copyOf(chain, size);
+    }
+
+    /**
+     * @return the frame followed by all its ancestors or null if the tree
+     * contains a loop.
+     */
+    private static int[] chainToRoot(FrameGraph graph, int frameId, int maxDepth) {
+        int[] chain = new int[8];
+        int size = 0;
+        int frame = frameId;
+        while (frame != 0) {
+            if (size == chain.length) {
+                chain = Arrays.copyOf(chain, size << 1);
+            }
+            chain[size++] = frame;
+            if (size > maxDepth) {
+                return null;
+            }
+            frame = graph.getLatestParent(frame);
+        }
+        return Arrays.copyOf(chain, size);
+    }
+}
@@ -0,0 +1,141 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense registry of the frames of a tree. Frame numbers are handed out
+ * consecutively starting with the reserved frame 0 ("NO_PARENT"), so the
+ * cache and the name of a frame are plain array accesses. The registry grows
+ * by doubling and never removes frames.
+ *
+ * The registry is not thread safe, the owner has to guard it.
+ */
+final class FrameRegistry implements FrameGraph {
+
+    static final String NO_PARENT = "NO_PARENT";
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> frameIds = new HashMap<>();
+    private TransformCache[] frames = new TransformCache[INITIAL_CAPACITY];
+    private String[] frameNames = new String[INITIAL_CAPACITY];
+    private int size = 0;
+    private long topologyVersion = 0;
+    private final AncestorIndex ancestors = new AncestorIndex();
+
+    FrameRegistry() {
+        insertFrameNumber(NO_PARENT);
+    }
+
+    /**
+     * Registers a new frame with an empty cache.
+     *
+     * @param frameId the name of the frame, must not be known yet.
+     * @return the number of the new frame.
+     */
+    int insertFrameNumber(String frameId) {
+        if (size == frames.length) {
+            frames = Arrays.copyOf(frames, size << 1);
+            frameNames = Arrays.copyOf(frameNames, size << 1);
+        }
+        final int frameNumber = size++;
+        frames[frameNumber] = new TransformCacheNull();
+        frameNames[frameNumber] = frameId;
+        frameIds.put(frameId, frameNumber);
+        topologyVersion++;
+        if (frameNumber != 0) {
+            ancestors.addFrame(frameNumber, topologyVersion);
+        }
+        return frameNumber;
+    }
+
+    /**
+     * Replaces the cache of a known frame.
+     *
+     * @param frameNumber the frame number.
+     * @param cache the new cache.
+     */
+    void setFrame(int frameNumber, TransformCache cache) {
+        frames[frameNumber] = cache;
+    }
+
+    /**
+     * Records that the latest parent of a frame has changed.
+     *
+     * @param frameNumber the frame number.
+     * @param parent the new latest parent.
+     */
+    void parentChanged(int frameNumber, int parent) {
+        topologyVersion++;
+        ancestors.setParent(frameNumber, parent, topologyVersion);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return size;
+    }
+
+    @Override
+    public TransformCache getFrame(int frameNumber) {
+        if (frameNumber <= 0 || frameNumber >= size) {
+            return null;
+        }
+        return frames[frameNumber];
+    }
+
+    @Override
+    public String getFrameName(int frameNumber) {
+        if (frameNumber < 0 || frameNumber >= size) {
+            return null;
+        }
+        return frameNames[frameNumber];
+    }
+
+    @Override
+    public int getFrameNumber(String frameId) {
+        final Integer frameNumber = frameIds.get(frameId);
+        return frameNumber == null ? -1 : frameNumber;
+    }
+
+    @Override
+    public int getLatestParent(int frameNumber) {
+        if (frameNumber <= 0 || frameNumber >= size) {
+            return 0;
+        }
+        return frames[frameNumber].getLatestParent();
+    }
+
+    @Override
+    public long getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    @Override
+    public AncestorIndex getAncestorIndex() {
+        return ancestors;
+    }
+}
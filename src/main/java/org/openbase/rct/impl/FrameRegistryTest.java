@@ -0,0 +1,110 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+import org.openbase.rct.MutableTransform;
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformerException;
+import org.slf4j.LoggerFactory;
+
+public class FrameRegistryTest {
+
+	private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(FrameRegistryTest.class);
+
+	private static final int CHAIN_DEPTH = 10;
+
+	@Test
+	public void testInsertAndGrow() {
+		FrameRegistry registry = new FrameRegistry();
+		assertEquals(1, registry.getFrameCount());
+		assertEquals(0, registry.getFrameNumber(FrameRegistry.NO_PARENT));
+		assertNull(registry.getFrame(0));
+
+		for (int i = 1; i <= 100; i++) {
+			assertEquals(i, registry.insertFrameNumber("frame" + i));
+		}
+		assertEquals(101, registry.getFrameCount());
+		assertEquals(42, registry.getFrameNumber("frame42"));
+		assertEquals("frame42", registry.getFrameName(42));
+		assertEquals(-1, registry.getFrameNumber("unknown"));
+		assertNull(registry.getFrameName(101));
+		assertNull(registry.getFrame(101));
+		assertTrue(!registry.getFrame(100).isValid());
+
+		TransformCache cache = new TransformCacheStatic();
+		registry.setFrame(100, cache);
+		assertSame(cache, registry.getFrame(100));
+	}
+
+	/**
+	 * Walks through a chain of {@value #CHAIN_DEPTH} frames that are
+	 * registered after a growing number of unrelated frames. With an indexed
+	 * registry the cost per lookup does not depend on the number of frames.
+	 * The cost is only logged, timings are too noisy for an assertion.
+	 */
+	@Test(timeout = 60000)
+	public void testWalkCostIsIndependentOfFrameCount() throws TransformerException {
+		final int[] frameCounts = {100, 1000, 2000, 8000};
+		for (int frameCount : frameCounts) {
+			LOGGER.info("frames: " + frameCount + ", " + CHAIN_DEPTH + " deep lookup: " + benchmarkWalk(frameCount) + " ns");
+		}
+	}
+
+	private double benchmarkWalk(int frameCount) throws TransformerException {
+		final TransformerCoreDefault core = new TransformerCoreDefault(10000);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		final Transform3D unit = new Transform3D(identity, new Vector3d(1, 0, 0), 1);
+		for (int i = 0; i < frameCount - CHAIN_DEPTH - 1; i++) {
+			core.setTransform(new Transform(unit, "world", "object" + i, 1), true);
+		}
+		for (int i = 0; i < CHAIN_DEPTH; i++) {
+			core.setTransform(new Transform(unit, "link" + i, "link" + (i + 1), 1), false);
+		}
+
+		final MutableTransform result = new MutableTransform();
+		final int warmup = 20000;
+		final int lookups = 100000;
+		for (int i = 0; i < warmup; i++) {
+			core.lookupTransform("link0", "link" + CHAIN_DEPTH, 0, result);
+		}
+		final String target = "link0";
+		final String source = "link" + CHAIN_DEPTH;
+		final long start = System.nanoTime();
+		for (int i = 0; i < lookups; i++) {
+			core.lookupTransform(target, source, 0, result);
+		}
+		final long nanos = System.nanoTime() - start;
+		assertEquals(CHAIN_DEPTH, result.getTranslation().x, 1e-9);
+		return (double) nanos / lookups;
+	}
+}
@@ -0,0 +1,343 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Incrementally maintained poses of all frames relative to the root of their
+ * tree, composed from the latest sample of every frame. A new sample only
+ * invalidates the subtree below its frame, invalid poses are recomposed on
+ * the next lookup starting at the closest valid ancestor.
+ * <p>
+ * Besides the pose, every frame keeps the latest timestamp of the closest
+ * dynamic frame on its chain to the root and the depth up to which all
+ * dynamic frames of the chain share that timestamp. Poses above the common
+ * ancestor of source and target cancel out, so only the frames below it
+ * have to share a timestamp. That timestamp is then the latest common time
+ * of the path and every frame on it is sampled exactly there, so the result
+ * equals the regular latest lookup. Otherwise the lookup is left to the
+ * regular walk.
+ * <p>
+ * Valid entries are read optimistically, also if they do not share a
+ * latest time, so lookups between frames with different rates fall back to
+ * the walk without locking. Only invalidation of valid entries and
+ * recomposition take the write lock.
+ */
+final class LatestPoses {
+
+    /**
+     * Returned by {@link #lookup(FrameGraph, int, int, double[])} if the
+     * cache can not answer the lookup.
+     */
+    static final long MISS = Long.MIN_VALUE;
+
+    /**
+     * Returned by {@link #read(FrameGraph, int, int, double[])} if an entry
+     * has to be resolved first.
+     */
+    private static final long UNRESOLVED = Long.MIN_VALUE + 1;
+
+    /**
+     * Stamp of frames without a dynamic frame on their chain to the root.
+     */
+    private static final long NO_STAMP = Long.MAX_VALUE;
+
+    private static final int STRIDE = PoseMath.STRIDE;
+
+    private final StampedLock lock = new StampedLock();
+    private final TransformInternal st = new TransformInternal();
+
+    // topology the child lists were built for, guarded by the lock
+    private long topologyVersion = -1;
+    private int size = 0;
+    private int[] firstChild = new int[0];
+    private int[] nextSibling = new int[0];
+    private boolean[] valid = new boolean[0];
+    private double[] poses = new double[0];
+    private int[] roots = new int[0];
+    private int[] depths = new int[0];
+    // latest stamp of the closest dynamic frame on the chain and its depth
+    private long[] stamps = new long[0];
+    private int[] stampDepths = new int[0];
+    // smallest depth up to which all dynamic frames share the stamp
+    private int[] uniformDepths = new int[0];
+    private int[] stack = new int[16];
+    // acquisitions of the write lock, guarded by the lock
+    private long writeLocks;
+
+    /**
+     * Invalidates the poses of the frame and all frames below it.
+     *
+     * @param frameNumber the frame that received a new sample.
+     */
+    void invalidate(int frameNumber) {
+        // invalid frames only have invalid children, a frame that becomes
+        // valid after the check was resolved from the new sample already
+        final long optimistic = lock.tryOptimisticRead();
+        if (optimistic != 0) {
+            final boolean[] valid = this.valid;
+            final boolean invalid = frameNumber >= size || frameNumber >= valid.length || !valid[frameNumber];
+            if (lock.validate(optimistic) && invalid) {
+                return;
+            }
+        }
+
+        final long stamp = lock.writeLock();
+        try {
+            writeLocks++;
+            if (frameNumber >= size || !valid[frameNumber]) {
+                return;
+            }
+            int depth = 0;
+            stack[depth++] = frameNumber;
+            while (depth > 0) {
+                final int frame = stack[--depth];
+                valid[frame] = false;
+                for (int child = firstChild[frame]; child != 0; child = nextSibling[child]) {
+                    if (valid[child]) {
+                        if (depth == stack.length) {
+                            stack = Arrays.copyOf(stack, depth << 1);
+                        }
+                        stack[depth++] = child;
+                    }
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops all poses, e.g. after the caches were cleared.
+     */
+    void invalidateAll() {
+        final long stamp = lock.writeLock();
+        try {
+            topologyVersion = -1;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Looks up the latest transform between two different frames.
+     *
+     * @param graph the frame tree.
+     * @param targetId the target frame.
+     * @param sourceId the source frame.
+     * @param out receives translation x, y, z and rotation x, y, z, w of the
+     * source and then of the target relative to their root.
+     * @return the latest common time or {@link #MISS}.
+     */
+    long lookup(FrameGraph graph, int targetId, int sourceId, double[] out) {
+        final int ancestor = graph.getAncestorIndex().getCommonAncestor(targetId, sourceId, graph.getTopologyVersion());
+        if (ancestor <= 0) {
+            // not connected or unknown, e.g. because of a loop
+            return MISS;
+        }
+        final long optimistic = lock.tryOptimisticRead();
+        if (optimistic != 0) {
+            final long time = read(graph, targetId, sourceId, ancestor, out);
+            if (lock.validate(optimistic) && time != UNRESOLVED) {
+                return time;
+            }
+        }
+
+        final long stamp = lock.writeLock();
+        try {
+            writeLocks++;
+            if (topologyVersion != graph.getTopologyVersion()) {
+                rebuild(graph);
+            }
+            if (targetId >= size || sourceId >= size || !resolve(graph, targetId) || !resolve(graph, sourceId)) {
+                return MISS;
+            }
+            final long time = read(graph, targetId, sourceId, ancestor, out);
+            return time == UNRESOLVED ? MISS : time;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return how often the write lock was taken, e.g. to verify that lookups
+     * of valid entries do not lock.
+     */
+    long getWriteLocks() {
+        final long stamp = lock.readLock();
+        try {
+            return writeLocks;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads two valid poses, possibly without holding the lock. Inconsistent
+     * reads are detected by the caller.
+     *
+     * @param ancestor the common ancestor of both frames.
+     * @return the latest common time, {@link #MISS} if both entries are valid
+     * but not connected or the frames below the common ancestor are sampled
+     * at different times, or {@link #UNRESOLVED} if an entry has to be
+     * resolved first.
+     */
+    private long read(FrameGraph graph, int targetId, int sourceId, int ancestor, double[] out) {
+        final boolean[] valid = this.valid;
+        final double[] poses = this.poses;
+        final int[] roots = this.roots;
+        final int[] depths = this.depths;
+        final long[] stamps = this.stamps;
+        final int[] stampDepths = this.stampDepths;
+        final int[] uniformDepths = this.uniformDepths;
+        final int length = valid.length;
+        if (topologyVersion != graph.getTopologyVersion()
+                || targetId >= length || sourceId >= length || ancestor >= length
+                || poses.length < length * STRIDE || roots.length < length || depths.length < length
+                || stamps.length < length || stampDepths.length < length || uniformDepths.length < length
+                || !valid[targetId] || !valid[sourceId]) {
+            return UNRESOLVED;
+        }
+        if (roots[targetId] != roots[sourceId] || !valid[ancestor]) {
+            return MISS;
+        }
+        // the frames below the common ancestor are at least one level deeper
+        final int below = depths[ancestor] + 1;
+        final long sourceTime = stampBelow(sourceId, below);
+        final long targetTime = stampBelow(targetId, below);
+        if (sourceTime == MISS || targetTime == MISS
+                || (sourceTime != NO_STAMP && targetTime != NO_STAMP && sourceTime != targetTime)) {
+            return MISS;
+        }
+        final long time = sourceTime != NO_STAMP ? sourceTime : targetTime;
+        System.arraycopy(poses, sourceId * STRIDE, out, 0, STRIDE);
+        System.arraycopy(poses, targetId * STRIDE, out, STRIDE, STRIDE);
+        // static frames only
+        return time == NO_STAMP ? 0 : time;
+    }
+
+    /**
+     * @return the stamp shared by the dynamic frames of the chain from the
+     * frame up to the given depth, {@link #NO_STAMP} if there are none or
+     * {@link #MISS} if their stamps differ.
+     */
+    private long stampBelow(int frame, int depth) {
+        if (stampDepths[frame] < depth) {
+            return NO_STAMP;
+        }
+        return uniformDepths[frame] > depth ? MISS : stamps[frame];
+    }
+
+    /**
+     * Builds the child lists of the current topology and drops all poses.
+     * Requires the write lock.
+     */
+    private void rebuild(FrameGraph graph) {
+        size = graph.getFrameCount();
+        if (size > valid.length) {
+            final int capacity = Math.max(size, valid.length << 1);
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            valid = new boolean[capacity];
+            poses = new double[capacity * STRIDE];
+            roots = new int[capacity];
+            depths = new int[capacity];
+            stamps = new long[capacity];
+            stampDepths = new int[capacity];
+            uniformDepths = new int[capacity];
+        } else {
+            Arrays.fill(firstChild, 0);
+            Arrays.fill(valid, false);
+        }
+        for (int frame = size - 1; frame > 0; frame--) {
+            final int parent = graph.getLatestParent(frame);
+            nextSibling[frame] = firstChild[parent];
+            firstChild[parent] = frame;
+        }
+        topologyVersion = graph.getTopologyVersion();
+    }
+
+    /**
+     * Composes the pose of the frame from the closest valid ancestor.
+     * Requires the write lock.
+     *
+     * @return false if the caches do not match the topology, e.g. because of
+     * a concurrent change, or the tree contains a loop.
+     */
+    private boolean resolve(FrameGraph graph, int frame) {
+        int depth = 0;
+        int current = frame;
+        while (!valid[current]) {
+            final int parent = graph.getLatestParent(current);
+            final TransformCache cache = graph.getFrame(current);
+            if (parent == 0 || cache == null || !cache.isValid()) {
+                PoseMath.setIdentity(poses, current * STRIDE);
+                roots[current] = current;
+                depths[current] = 0;
+                stamps[current] = NO_STAMP;
+                stampDepths[current] = -1;
+                uniformDepths[current] = 0;
+                valid[current] = true;
+                break;
+            }
+            if (!cache.getData(0, st) || st.frame_id != parent) {
+                return false;
+            }
+            if (depth == stack.length) {
+                if (depth > AbstractTransformerCore.MAX_GRAPH_DEPTH) {
+                    return false;
+                }
+                stack = Arrays.copyOf(stack, depth << 1);
+            }
+            stack[depth++] = current;
+            // keep the local transform until the parent is composed
+            PoseMath.set(poses, current * STRIDE, st);
+            // keep the own stamp until the parent is composed
+            stamps[current] = cache instanceof TransformCacheStatic ? NO_STAMP : st.stamp;
+            current = parent;
+        }
+
+        // compose downwards, current is the valid parent of the last frame
+        while (depth > 0) {
+            final int child = stack[--depth];
+            PoseMath.compose(poses, current * STRIDE, poses, child * STRIDE, poses, child * STRIDE);
+            depths[child] = depths[current] + 1;
+            if (stamps[child] == NO_STAMP) {
+                stamps[child] = stamps[current];
+                stampDepths[child] = stampDepths[current];
+                uniformDepths[child] = uniformDepths[current];
+            } else {
+                stampDepths[child] = depths[child];
+                uniformDepths[child] = stampDepths[current] < 0 || stamps[current] == stamps[child]
+                        ? uniformDepths[current] : stampDepths[current] + 1;
+            }
+            roots[child] = roots[current];
+            valid[child] = true;
+            current = child;
+        }
+        return true;
+    }
+}
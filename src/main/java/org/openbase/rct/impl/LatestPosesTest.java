@@ -0,0 +1,172 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformerException;
+
+public class LatestPosesTest {
+
+	private static final Quat4d IDENTITY = new Quat4d(0, 0, 0, 1);
+
+	private static Transform generateTransform(String parent, String child, double x, long time) {
+		return new Transform(new Transform3D(IDENTITY, new Vector3d(x, 0, 0), 1), parent, child, time);
+	}
+
+	@Test
+	public void testLookupRequiresCommonLatestTime() throws TransformerException {
+		final TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("map", "base", 1, 10), false);
+		core.setTransform(generateTransform("base", "arm", 2, 10), false);
+		core.setTransform(generateTransform("base", "camera", 4, 0), true);
+		final FrameGraph graph = core.getSnapshot();
+		final int map = graph.getFrameNumber("map");
+		final int arm = graph.getFrameNumber("arm");
+		final int camera = graph.getFrameNumber("camera");
+
+		final LatestPoses poses = new LatestPoses();
+		final double[] out = new double[14];
+		assertEquals(10, poses.lookup(graph, map, arm, out));
+		assertEquals(3, out[0], 0);
+		assertEquals(0, out[7], 0);
+		assertEquals(10, poses.lookup(graph, arm, camera, out));
+		assertEquals(5, out[0], 0);
+
+		// only the subtree of the updated frame is recomposed
+		core.setTransform(generateTransform("base", "arm", 3, 20), false);
+		poses.invalidate(arm);
+		assertEquals(LatestPoses.MISS, poses.lookup(graph, map, arm, out));
+		core.setTransform(generateTransform("map", "base", 2, 20), false);
+		poses.invalidate(graph.getFrameNumber("base"));
+		assertEquals(20, poses.lookup(graph, map, arm, out));
+		assertEquals(5, out[0], 0);
+		assertEquals(20, poses.lookup(graph, map, camera, out));
+		assertEquals(6, out[0], 0);
+	}
+
+	@Test(timeout = 60000)
+	public void testDifferentRatesMissWithoutLocking() throws Exception {
+		final TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("map", "base", 1, 20), false);
+		core.setTransform(generateTransform("base", "arm", 2, 10), false);
+		final FrameGraph graph = core.getSnapshot();
+		final int map = graph.getFrameNumber("map");
+		final int arm = graph.getFrameNumber("arm");
+
+		final LatestPoses poses = new LatestPoses();
+		final double[] first = new double[14];
+		assertEquals(LatestPoses.MISS, poses.lookup(graph, map, arm, first));
+		final long writeLocks = poses.getWriteLocks();
+
+		// the entries are valid, the walk resolves the lookup
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final Future<?>[] lookups = new Future<?>[4];
+			for (int i = 0; i < lookups.length; i++) {
+				lookups[i] = executor.submit(() -> {
+					final double[] out = new double[14];
+					for (int j = 0; j < 10000; j++) {
+						assertEquals(LatestPoses.MISS, poses.lookup(graph, map, arm, out));
+						assertEquals(LatestPoses.MISS, poses.lookup(graph, arm, map, out));
+					}
+				});
+			}
+			for (Future<?> lookup : lookups) {
+				lookup.get();
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		assertEquals(writeLocks, poses.getWriteLocks());
+
+		// invalidating an invalid frame does not lock either
+		poses.invalidate(arm);
+		assertEquals(writeLocks + 1, poses.getWriteLocks());
+		poses.invalidate(arm);
+		assertEquals(writeLocks + 1, poses.getWriteLocks());
+	}
+
+	@Test
+	public void testSlowerFrameAboveCommonAncestorHits() throws TransformerException {
+		final TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("map", "odom", 1, 10), false);
+		core.setTransform(generateTransform("odom", "base", 2, 20), false);
+		core.setTransform(generateTransform("odom", "imu", 4, 20), false);
+		core.setTransform(generateTransform("imu", "camera", 8, 0), true);
+		final FrameGraph graph = core.getSnapshot();
+		final int map = graph.getFrameNumber("map");
+		final int base = graph.getFrameNumber("base");
+		final int camera = graph.getFrameNumber("camera");
+
+		final LatestPoses poses = new LatestPoses();
+		final double[] out = new double[14];
+		assertEquals(20, poses.lookup(graph, camera, base, out));
+		final long writeLocks = poses.getWriteLocks();
+		// the pose of odom cancels out
+		assertEquals(20, poses.lookup(graph, camera, base, out));
+		assertEquals(20, poses.lookup(graph, base, camera, out));
+		assertEquals(13, out[0], 0);
+		assertEquals(3, out[7], 0);
+		assertEquals(writeLocks, poses.getWriteLocks());
+
+		// odom is below the common ancestor map
+		assertEquals(LatestPoses.MISS, poses.lookup(graph, map, camera, out));
+		assertEquals(writeLocks, poses.getWriteLocks());
+	}
+
+	@Test
+	public void testLatestLookupFollowsUpdates() throws TransformerException {
+		final TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		for (long time = 10; time <= 50; time += 10) {
+			core.setTransform(generateTransform("map", "base", time, time), false);
+			core.setTransform(generateTransform("base", "arm", 1, time), false);
+			assertEquals(new Vector3d(time + 1, 0, 0), core.lookupTransform("map", "arm", 0).getTranslation());
+			assertEquals(time, core.lookupTransform("arm", "map", 0).getTime());
+		}
+
+		// the arm lags behind, the latest common time is the one of the arm
+		core.setTransform(generateTransform("map", "base", 70, 70), false);
+		assertEquals(new Vector3d(51, 0, 0), core.lookupTransform("map", "arm", 0).getTranslation());
+
+		// reparenting
+		core.setTransform(generateTransform("map", "arm", 7, 70), false);
+		assertEquals(new Vector3d(7, 0, 0), core.lookupTransform("map", "arm", 0).getTranslation());
+
+		core.clear();
+		core.setTransform(generateTransform("map", "base", 3, 80), false);
+		assertEquals(new Vector3d(3, 0, 0), core.lookupTransform("map", "base", 0).getTranslation());
+	}
+}
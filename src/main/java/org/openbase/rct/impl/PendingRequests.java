@@ -0,0 +1,236 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Index of the transform requests that could not be answered yet. A request
+ * either waits for a change of the frame tree, because one of its frames is
+ * unknown or the frames are not connected, or for data of the first frame on
+ * its path that does not cover the requested time. Insertions only release
+ * the requests they could answer into the ready list, which is drained and
+ * evaluated by the owner.
+ *
+ * A request is parked with the topology epoch read before it was evaluated.
+ * If the tree changed in between, it is released immediately, so no change
+ * is missed.
+ */
+final class PendingRequests {
+
+    private static final class Waiting implements Comparable<Waiting> {
+
+        private final TransformRequest request;
+        private final long time;
+
+        private Waiting(TransformRequest request, long time) {
+            this.request = request;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(Waiting other) {
+            return Long.compare(time, other.time);
+        }
+    }
+
+    private static final int TOPOLOGY = -1;
+    private static final int READY = -2;
+
+    private final List<TransformRequest> waitingForTopology = new ArrayList<>();
+    private final Map<Integer, PriorityQueue<Waiting>> waitingForData = new HashMap<>();
+    private List<TransformRequest> ready = new ArrayList<>();
+
+    /**
+     * Frame number a request waits for, {@link #TOPOLOGY} or {@link #READY}.
+     */
+    private final Map<TransformRequest, Integer> locations = new IdentityHashMap<>();
+    private volatile long topologyEpoch = 0;
+    private volatile int size = 0;
+
+    /**
+     * @return true if no request is pending.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of pending requests, including the released ones.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the epoch to park requests with, read before the frame tree the
+     * request is evaluated on is acquired.
+     */
+    long getTopologyEpoch() {
+        return topologyEpoch;
+    }
+
+    /**
+     * Parks a request until the frame tree changes.
+     *
+     * @param request the request.
+     * @param epoch the epoch read before the request was evaluated.
+     * @return true if the request was released immediately.
+     */
+    synchronized boolean parkOnTopology(TransformRequest request, long epoch) {
+        size++;
+        if (epoch != topologyEpoch) {
+            release(request);
+            return true;
+        }
+        waitingForTopology.add(request);
+        locations.put(request, TOPOLOGY);
+        return false;
+    }
+
+    /**
+     * Parks a request until data of the given frame is inserted.
+     *
+     * @param request the request.
+     * @param epoch the epoch read before the request was evaluated.
+     * @param frameNumber the frame the request waits for.
+     * @param time the minimal time of the inserted sample, Long.MIN_VALUE
+     * for any sample.
+     * @return true if the request was released immediately.
+     */
+    synchronized boolean parkOnData(TransformRequest request, long epoch, int frameNumber, long time) {
+        size++;
+        if (epoch != topologyEpoch) {
+            release(request);
+            return true;
+        }
+        PriorityQueue<Waiting> queue = waitingForData.get(frameNumber);
+        if (queue == null) {
+            queue = new PriorityQueue<>();
+            waitingForData.put(frameNumber, queue);
+        }
+        queue.add(new Waiting(request, time));
+        locations.put(request, frameNumber);
+        return false;
+    }
+
+    /**
+     * Removes a request, e.g. because it was cancelled or timed out.
+     *
+     * @param request the request.
+     * @return true if the request was pending.
+     */
+    synchronized boolean remove(final TransformRequest request) {
+        final Integer location = locations.remove(request);
+        if (location == null) {
+            return false;
+        }
+        if (location == TOPOLOGY) {
+            waitingForTopology.remove(request);
+        } else if (location == READY) {
+            ready.remove(request);
+        } else {
+            final PriorityQueue<Waiting> queue = waitingForData.get(location);
+            queue.removeIf(waiting -> waiting.request == request);
+            if (queue.isEmpty()) {
+                waitingForData.remove(location);
+            }
+        }
+        size--;
+        return true;
+    }
+
+    private void release(TransformRequest request) {
+        ready.add(request);
+        locations.put(request, READY);
+    }
+
+    /**
+     * Releases the requests waiting for data of the frame up to the given
+     * time.
+     *
+     * @param frameNumber the frame the sample was inserted to.
+     * @param time the time of the sample.
+     * @return true if requests were released.
+     */
+    synchronized boolean dataInserted(int frameNumber, long time) {
+        final PriorityQueue<Waiting> queue = waitingForData.get(frameNumber);
+        if (queue == null) {
+            return false;
+        }
+        boolean released = false;
+        while (!queue.isEmpty() && queue.peek().time <= time) {
+            release(queue.poll().request);
+            released = true;
+        }
+        if (queue.isEmpty()) {
+            waitingForData.remove(frameNumber);
+        }
+        return released;
+    }
+
+    /**
+     * Releases all requests, since their paths may have changed.
+     *
+     * @return true if requests were released.
+     */
+    synchronized boolean topologyChanged() {
+        topologyEpoch++;
+        for (final TransformRequest request : waitingForTopology) {
+            release(request);
+        }
+        waitingForTopology.clear();
+        for (final PriorityQueue<Waiting> queue : waitingForData.values()) {
+            for (final Waiting waiting : queue) {
+                release(waiting.request);
+            }
+        }
+        waitingForData.clear();
+        return !ready.isEmpty();
+    }
+
+    /**
+     * Removes the released requests. Requests that are not answered have to
+     * be parked again.
+     *
+     * @return the released requests.
+     */
+    synchronized List<TransformRequest> drainReady() {
+        if (ready.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<TransformRequest> drained = ready;
+        ready = new ArrayList<>();
+        for (final TransformRequest request : drained) {
+            locations.remove(request);
+        }
+        size -= drained.size();
+        return drained;
+    }
+}
@@ -0,0 +1,79 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openbase.rct.impl.TransformRequest.FutureTransform;
+
+public class PendingRequestsTest {
+
+	private static TransformRequest request(long time) {
+		return new TransformRequest("foo", "bar", time, new FutureTransform());
+	}
+
+	@Test
+	public void testDataReleasesOnlyMatchingRequests() {
+		final PendingRequests pending = new PendingRequests();
+		final long epoch = pending.getTopologyEpoch();
+		final TransformRequest early = request(10);
+		final TransformRequest late = request(20);
+		final TransformRequest other = request(10);
+		assertFalse(pending.parkOnData(late, epoch, 1, 20));
+		assertFalse(pending.parkOnData(early, epoch, 1, 10));
+		assertFalse(pending.parkOnData(other, epoch, 2, 10));
+		assertEquals(3, pending.size());
+
+		// another frame and too old samples release nothing
+		assertFalse(pending.dataInserted(3, 100));
+		assertFalse(pending.dataInserted(1, 5));
+		assertTrue(pending.drainReady().isEmpty());
+
+		assertTrue(pending.dataInserted(1, 15));
+		assertEquals(1, pending.drainReady().size());
+		assertEquals(2, pending.size());
+
+		assertTrue(pending.dataInserted(1, 25));
+		assertTrue(pending.drainReady().contains(late));
+		assertEquals(1, pending.size());
+	}
+
+	@Test
+	public void testTopologyChangeReleasesAllRequests() {
+		final PendingRequests pending = new PendingRequests();
+		final long epoch = pending.getTopologyEpoch();
+		assertFalse(pending.parkOnTopology(request(0), epoch));
+		assertFalse(pending.parkOnData(request(10), epoch, 1, 10));
+		assertTrue(pending.topologyChanged());
+		assertEquals(2, pending.drainReady().size());
+		assertTrue(pending.isEmpty());
+
+		// parked with an outdated epoch, the change may have been missed
+		assertTrue(pending.parkOnTopology(request(0), epoch));
+		assertEquals(1, pending.drainReady().size());
+		assertFalse(pending.topologyChanged());
+	}
+}
@@ -0,0 +1,202 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.openbase.rct.Transform;
+
+/**
+ * Rigid transform arithmetic on primitive doubles. A pose is stored as seven
+ * consecutive values x, y, z, qx, qy, qz, qw of an array, starting at an
+ * offset. The pose a&#8728;b maps points of the frame of b into the parent of
+ * a. Inputs and outputs may overlap, every method reads all of its inputs
+ * before it writes the outcome.
+ */
+final class PoseMath {
+
+    /**
+     * Number of values of one pose.
+     */
+    static final int STRIDE = 7;
+
+    private static final double SLERP_EPSILON = 0.000001;
+
+    private PoseMath() {
+    }
+
+    static void setIdentity(double[] out, int o) {
+        out[o] = 0.0;
+        out[o + 1] = 0.0;
+        out[o + 2] = 0.0;
+        out[o + 3] = 0.0;
+        out[o + 4] = 0.0;
+        out[o + 5] = 0.0;
+        out[o + 6] = 1.0;
+    }
+
+    static void set(double[] out, int o, TransformInternal t) {
+        out[o] = t.translation.x;
+        out[o + 1] = t.translation.y;
+        out[o + 2] = t.translation.z;
+        out[o + 3] = t.rotation.x;
+        out[o + 4] = t.rotation.y;
+        out[o + 5] = t.rotation.z;
+        out[o + 6] = t.rotation.w;
+    }
+
+    static void set(double[] out, int o, Transform t) {
+        final Vector3d translation = t.getTranslation();
+        final Quat4d rotation = t.getRotationQuat();
+        out[o] = translation.x;
+        out[o + 1] = translation.y;
+        out[o + 2] = translation.z;
+        out[o + 3] = rotation.x;
+        out[o + 4] = rotation.y;
+        out[o + 5] = rotation.z;
+        out[o + 6] = rotation.w;
+    }
+
+    /**
+     * Rotates the vector (x, y, z) by the quaternion stored at offset q and
+     * writes the three components to out at offset o. This evaluates the
+     * rotation matrix of the quaternion without storing it.
+     */
+    static void rotate(double[] p, int q, double x, double y, double z, double[] out, int o) {
+        rotate(p[q], p[q + 1], p[q + 2], p[q + 3], x, y, z, out, o);
+    }
+
+    /**
+     * out = a&#8728;b
+     */
+    static void compose(double[] a, int ao, double[] b, int bo, double[] out, int o) {
+        final double ax = a[ao + 3], ay = a[ao + 4], az = a[ao + 5], aw = a[ao + 6];
+        final double bx = b[bo + 3], by = b[bo + 4], bz = b[bo + 5], bw = b[bo + 6];
+        final double tx = a[ao], ty = a[ao + 1], tz = a[ao + 2];
+        rotate(a, ao + 3, b[bo], b[bo + 1], b[bo + 2], out, o);
+        out[o] += tx;
+        out[o + 1] += ty;
+        out[o + 2] += tz;
+        mulQuat(ax, ay, az, aw, bx, by, bz, bw, out, o + 3);
+    }
+
+    /**
+     * out = a<sup>-1</sup>
+     */
+    static void invert(double[] a, int ao, double[] out, int o) {
+        final double norm = 1.0 / (a[ao + 3] * a[ao + 3] + a[ao + 4] * a[ao + 4] + a[ao + 5] * a[ao + 5] + a[ao + 6] * a[ao + 6]);
+        final double x = -a[ao], y = -a[ao + 1], z = -a[ao + 2];
+        out[o + 3] = -a[ao + 3] * norm;
+        out[o + 4] = -a[ao + 4] * norm;
+        out[o + 5] = -a[ao + 5] * norm;
+        out[o + 6] = a[ao + 6] * norm;
+        rotate(out, o + 3, x, y, z, out, o);
+    }
+
+    /**
+     * out = a<sup>-1</sup>&#8728;b, e.g. the transform from b to a if both
+     * are given relative to the same root.
+     */
+    static void inverseCompose(double[] a, int ao, double[] b, int bo, double[] out, int o) {
+        final double norm = 1.0 / (a[ao + 3] * a[ao + 3] + a[ao + 4] * a[ao + 4] + a[ao + 5] * a[ao + 5] + a[ao + 6] * a[ao + 6]);
+        final double ix = -a[ao + 3] * norm, iy = -a[ao + 4] * norm, iz = -a[ao + 5] * norm, iw = a[ao + 6] * norm;
+        final double dx = b[bo] - a[ao], dy = b[bo + 1] - a[ao + 1], dz = b[bo + 2] - a[ao + 2];
+        final double bx = b[bo + 3], by = b[bo + 4], bz = b[bo + 5], bw = b[bo + 6];
+        mulQuat(ix, iy, iz, iw, bx, by, bz, bw, out, o + 3);
+        rotate(ix, iy, iz, iw, dx, dy, dz, out, o);
+    }
+
+    /**
+     * Spherical linear interpolation of two quaternions, the same as
+     * {@link Quat4d#interpolate(Quat4d, Quat4d, double)} but without reading
+     * the inputs from quaternion objects.
+     *
+     * @param ratio 0 for the first, 1 for the second quaternion.
+     */
+    static void slerp(double x1, double y1, double z1, double w1, double x2, double y2, double z2, double w2, double ratio, Quat4d out) {
+        double dot = x1 * x2 + y1 * y2 + z1 * z2 + w1 * w2;
+        double sign = 1.0;
+        if (dot < 0) {
+            sign = -1.0;
+            dot = -dot;
+        }
+        final double s1, s2;
+        if ((1.0 - dot) > SLERP_EPSILON) {
+            final double om = Math.acos(dot);
+            final double sinom = Math.sin(om);
+            s1 = sign * Math.sin((1.0 - ratio) * om) / sinom;
+            s2 = Math.sin(ratio * om) / sinom;
+        } else {
+            s1 = sign * (1.0 - ratio);
+            s2 = ratio;
+        }
+        out.x = s1 * x1 + s2 * x2;
+        out.y = s1 * y1 + s2 * y2;
+        out.z = s1 * z1 + s2 * z2;
+        out.w = s1 * w1 + s2 * w2;
+    }
+
+    /**
+     * Normalized linear interpolation of two quaternions along the shorter
+     * arc. Cheaper than {@link #slerp} and close to it for the small angles
+     * between neighbouring samples.
+     *
+     * @param ratio 0 for the first, 1 for the second quaternion.
+     */
+    static void nlerp(double x1, double y1, double z1, double w1, double x2, double y2, double z2, double w2, double ratio, Quat4d out) {
+        final double s1 = x1 * x2 + y1 * y2 + z1 * z2 + w1 * w2 < 0 ? ratio - 1.0 : 1.0 - ratio;
+        final double x = s1 * x1 + ratio * x2;
+        final double y = s1 * y1 + ratio * y2;
+        final double z = s1 * z1 + ratio * z2;
+        final double w = s1 * w1 + ratio * w2;
+        final double norm = Math.sqrt(x * x + y * y + z * z + w * w);
+        out.x = x / norm;
+        out.y = y / norm;
+        out.z = z / norm;
+        out.w = w / norm;
+    }
+
+    private static void rotate(double qx, double qy, double qz, double qw, double x, double y, double z, double[] out, int o) {
+        final double m00 = 1.0 - 2.0 * qy * qy - 2.0 * qz * qz;
+        final double m10 = 2.0 * (qx * qy + qw * qz);
+        final double m20 = 2.0 * (qx * qz - qw * qy);
+        final double m01 = 2.0 * (qx * qy - qw * qz);
+        final double m11 = 1.0 - 2.0 * qx * qx - 2.0 * qz * qz;
+        final double m21 = 2.0 * (qy * qz + qw * qx);
+        final double m02 = 2.0 * (qx * qz + qw * qy);
+        final double m12 = 2.0 * (qy * qz - qw * qx);
+        final double m22 = 1.0 - 2.0 * qx * qx - 2.0 * qy * qy;
+        out[o] = m00 * x + m01 * y + m02 * z;
+        out[o + 1] = m10 * x + m11 * y + m12 * z;
+        out[o + 2] = m20 * x + m21 * y + m22 * z;
+    }
+
+    private static void mulQuat(double ax, double ay, double az, double aw, double bx, double by, double bz, double bw, double[] out, int o) {
+        out[o] = aw * bx + ax * bw + ay * bz - az * by;
+        out[o + 1] = aw * by + ay * bw + az * bx - ax * bz;
+        out[o + 2] = aw * bz + az * bw + ax * by - ay * bx;
+        out[o + 3] = aw * bw - ax * bx - ay * by - az * bz;
+    }
+}
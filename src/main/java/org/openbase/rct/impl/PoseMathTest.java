@@ -0,0 +1,126 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+
+public class PoseMathTest {
+
+	private static final double EPSILON = 1e-9;
+
+	private static double[] randomPose(Random random) {
+		final Quat4d rotation = new Quat4d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+		return new double[] { random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), rotation.x, rotation.y, rotation.z, rotation.w };
+	}
+
+	private static Transform3D toTransform3D(double[] pose, int offset) {
+		return new Transform3D(new Quat4d(pose[offset + 3], pose[offset + 4], pose[offset + 5], pose[offset + 6]),
+				new Vector3d(pose[offset], pose[offset + 1], pose[offset + 2]), 1.0);
+	}
+
+	private static void assertSame(Transform3D expected, double[] pose, int offset) {
+		final double[] expectedMatrix = new double[16];
+		final double[] actualMatrix = new double[16];
+		expected.get(expectedMatrix);
+		toTransform3D(pose, offset).get(actualMatrix);
+		for (int i = 0; i < 16; i++) {
+			assertEquals(expectedMatrix[i], actualMatrix[i], EPSILON);
+		}
+	}
+
+	@Test
+	public void testMatchesTransform3D() {
+		final Random random = new Random(17);
+		for (int i = 0; i < 100; i++) {
+			final double[] a = randomPose(random);
+			final double[] b = randomPose(random);
+			final double[] out = new double[PoseMath.STRIDE];
+
+			final Transform3D composed = new Transform3D();
+			composed.mul(toTransform3D(a, 0), toTransform3D(b, 0));
+			PoseMath.compose(a, 0, b, 0, out, 0);
+			assertSame(composed, out, 0);
+
+			final Transform3D inverse = toTransform3D(a, 0);
+			inverse.invert();
+			PoseMath.invert(a, 0, out, 0);
+			assertSame(inverse, out, 0);
+
+			final Transform3D inverseComposed = new Transform3D();
+			inverseComposed.mul(inverse, toTransform3D(b, 0));
+			PoseMath.inverseCompose(a, 0, b, 0, out, 0);
+			assertSame(inverseComposed, out, 0);
+		}
+	}
+
+	@Test
+	public void testInputsMayAliasOutput() {
+		final Random random = new Random(4);
+		final double[] poses = new double[2 * PoseMath.STRIDE];
+		final double[] a = randomPose(random);
+		final double[] b = randomPose(random);
+		System.arraycopy(a, 0, poses, 0, PoseMath.STRIDE);
+		System.arraycopy(b, 0, poses, PoseMath.STRIDE, PoseMath.STRIDE);
+		final double[] expected = new double[PoseMath.STRIDE];
+
+		PoseMath.compose(a, 0, b, 0, expected, 0);
+		PoseMath.compose(poses, 0, poses, PoseMath.STRIDE, poses, PoseMath.STRIDE);
+		for (int i = 0; i < PoseMath.STRIDE; i++) {
+			assertEquals(expected[i], poses[PoseMath.STRIDE + i], 0);
+		}
+
+		PoseMath.inverseCompose(a, 0, b, 0, expected, 0);
+		System.arraycopy(b, 0, poses, PoseMath.STRIDE, PoseMath.STRIDE);
+		PoseMath.inverseCompose(poses, 0, poses, PoseMath.STRIDE, poses, 0);
+		for (int i = 0; i < PoseMath.STRIDE; i++) {
+			assertEquals(expected[i], poses[i], 0);
+		}
+	}
+
+	@Test
+	public void testSlerpMatchesQuat4d() {
+		final Random random = new Random(9);
+		for (int i = 0; i < 100; i++) {
+			final Quat4d one = new Quat4d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+			final Quat4d two = new Quat4d(random.nextGaussian(), random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+			final double ratio = random.nextDouble();
+			final Quat4d expected = new Quat4d();
+			expected.interpolate(one, two, ratio);
+			final Quat4d actual = new Quat4d();
+			PoseMath.slerp(one.x, one.y, one.z, one.w, two.x, two.y, two.z, two.w, ratio, actual);
+			assertEquals(expected.x, actual.x, EPSILON);
+			assertEquals(expected.y, actual.y, EPSILON);
+			assertEquals(expected.z, actual.z, EPSILON);
+			assertEquals(expected.w, actual.w, EPSILON);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+import org.openbase.rct.TransformerException;
+
+/**
+ * Poses of frames relative to the root of their tree at one point in time.
+ * Each frame is resolved at most once per {@link #reset(int, long)}, so frames
+ * that share the upper part of the tree only walk it once. Instances are
+ * reused between lookups and are not thread safe.
+ */
+final class RootPoses {
+
+    private final TransformInternal st = new TransformInternal();
+    private double[] poses = new double[0];
+    private int[] roots = new int[0];
+    private boolean[] extrapolated = new boolean[0];
+    private int[] stamps = new int[0];
+    private int stamp = 0;
+    private int[] chain = new int[16];
+    private long time;
+
+    /**
+     * Forgets all resolved poses.
+     *
+     * @param frameCount the number of frames of the tree.
+     * @param time the time of the poses, 0 for the latest sample of every
+     * frame.
+     */
+    void reset(int frameCount, long time) {
+        this.time = time;
+        if (frameCount > stamps.length) {
+            final int capacity = Math.max(frameCount, stamps.length << 1);
+            poses = Arrays.copyOf(poses, capacity * PoseMath.STRIDE);
+            roots = Arrays.copyOf(roots, capacity);
+            extrapolated = Arrays.copyOf(extrapolated, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+        }
+        if (++stamp == 0) {
+            // wrapped around, entries with stamp 0 must not look resolved
+            Arrays.fill(stamps, -1);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Resolves the pose of the frame relative to the root of its tree.
+     *
+     * @param graph the frame tree.
+     * @param frame the frame.
+     * @return the root of the frame, which is the frame itself if it has no
+     * data at the time.
+     * @throws TransformerException if the tree contains a loop.
+     */
+    int resolve(FrameGraph graph, int frame) throws TransformerException {
+        // walk up to the first resolved frame or the root, keeping the
+        // transform to the parent of every frame on the way
+        int length = 0;
+        int current = frame;
+        while (stamps[current] != stamp) {
+            final TransformCache cache = graph.getFrame(current);
+            if (cache == null || !cache.isValid() || !cache.getData(time, st) || st.frame_id == 0) {
+                PoseMath.setIdentity(poses, current * PoseMath.STRIDE);
+                roots[current] = current;
+                extrapolated[current] = false;
+                stamps[current] = stamp;
+                break;
+            }
+            if (length == chain.length) {
+                if (length > AbstractTransformerCore.MAX_GRAPH_DEPTH) {
+                    throw new TransformerException("The tf tree is invalid because it contains a loop.");
+                }
+                chain = Arrays.copyOf(chain, length << 1);
+            }
+            chain[length++] = current;
+            PoseMath.set(poses, current * PoseMath.STRIDE, st);
+            extrapolated[current] = st.extrapolated;
+            current = st.frame_id;
+        }
+
+        // compose downwards, current is the resolved parent of the last frame
+        for (int i = length - 1; i >= 0; i--) {
+            final int child = chain[i];
+            PoseMath.compose(poses, current * PoseMath.STRIDE, poses, child * PoseMath.STRIDE, poses, child * PoseMath.STRIDE);
+            roots[child] = roots[current];
+            extrapolated[child] |= extrapolated[current];
+            stamps[child] = stamp;
+            current = child;
+        }
+        return roots[frame];
+    }
+
+    /**
+     * Copies the pose of a resolved frame relative to its root.
+     *
+     * @param frame the resolved frame.
+     * @param out the array to write the seven values of the pose to.
+     * @param offset the index of the first value in out.
+     */
+    void getPose(int frame, double[] out, int offset) {
+        System.arraycopy(poses, frame * PoseMath.STRIDE, out, offset, PoseMath.STRIDE);
+    }
+
+    /**
+     * @param frame the resolved frame.
+     * @return true if a frame on the way to the root was extrapolated beyond
+     * its latest sample.
+     */
+    boolean isExtrapolated(int frame) {
+        return extrapolated[frame];
+    }
+}
@@ -0,0 +1,155 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformSubscription;
+import org.openbase.rct.TransformerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Subscription that pushes the latest transform between two frames whenever
+ * a frame on their path receives data. Updates that arrive while a delivery
+ * is scheduled or running are conflated into one delivery of the latest
+ * transform, which is never sooner than the minimal interval after the
+ * previous delivery.
+ */
+final class Subscription implements TransformSubscription {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Subscription.class);
+
+    final String targetFrame;
+    final String sourceFrame;
+    private final long minIntervalNanos;
+    private final AbstractTransformerCore core;
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final Consumer<Transform> consumer;
+    private final AtomicLong conflated = new AtomicLong();
+
+    // guarded by this
+    private boolean dirty = false;
+    private boolean scheduled = false;
+    private boolean cancelled = false;
+    private long nextDelivery;
+
+    Subscription(AbstractTransformerCore core, String targetFrame, String sourceFrame, double maxRate, ScheduledExecutorService timer, Executor executor, Consumer<Transform> consumer) {
+        this.core = core;
+        this.targetFrame = targetFrame;
+        this.sourceFrame = sourceFrame;
+        this.minIntervalNanos = maxRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxRate) : 0;
+        this.timer = timer;
+        this.executor = executor;
+        this.consumer = consumer;
+        this.nextDelivery = System.nanoTime();
+    }
+
+    /**
+     * Notifies the subscription about new data on its path.
+     */
+    synchronized void markDirty() {
+        if (cancelled) {
+            return;
+        }
+        if (dirty || scheduled) {
+            conflated.incrementAndGet();
+        }
+        dirty = true;
+        if (!scheduled) {
+            scheduled = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Requires the monitor.
+     */
+    private void schedule() {
+        final long delay = Math.max(nextDelivery - System.nanoTime(), 0);
+        timer.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Hands the delivery to the executor on the timer thread.
+     */
+    private void dispatch() {
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException ex) {
+            // e.g. the executor was shut down, no delivery would ever run
+            LOGGER.warn("Executor rejected update of transformation from [" + sourceFrame + "] to [" + targetFrame + "], subscription is cancelled!", ex);
+            cancel();
+        }
+    }
+
+    private void deliver() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            dirty = false;
+            nextDelivery = System.nanoTime() + minIntervalNanos;
+        }
+        try {
+            consumer.accept(core.lookupTransform(targetFrame, sourceFrame, 0));
+        } catch (TransformerException ex) {
+            LOGGER.debug("Transformation from [" + sourceFrame + "] to [" + targetFrame + "] not available yet");
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Subscriber of transformation from [" + sourceFrame + "] to [" + targetFrame + "] failed!", ex);
+        } finally {
+            synchronized (this) {
+                scheduled = false;
+                if (dirty && !cancelled) {
+                    scheduled = true;
+                    schedule();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+        }
+        core.unsubscribe(this);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+}
@@ -24,6 +24,12 @@ package org.openbase.rct.impl;
 
 public interface TransformCache {
 
+    /**
+     * Samples a cache keeps at least when its history is limited, see
+     * {@link #limitSamples(int)}.
+     */
+    int MIN_SAMPLES = 2;
+
     class TimeAndFrameID {
 
         public TimeAndFrameID(long time, int frameID) {
@@ -35,12 +41,38 @@ public interface TransformCache {
         public int frameID;
     }
 
+    /**
+     * Position of a previous lookup in a cache, see
+     * {@link TransformCache#getData(long, TransformInternal, Cursor)}. The
+     * value is only meaningful to the cache that wrote it.
+     */
+    class Cursor {
+
+        long position = -1;
+    }
+
     boolean getData(long time, TransformInternal dataOut); // returns false if
     // data unavailable
     // (should be thrown
     // as lookup
     // exception
 
+    /**
+     * Same as {@link #getData(long, TransformInternal)}, but the search starts
+     * at the position the previous lookup with the same cursor ended at and
+     * the cursor is advanced to the sample found. Lookups with non decreasing
+     * times therefore take amortized constant time in caches that support
+     * it. Caches without support ignore the cursor.
+     *
+     * @param time the time of the sample.
+     * @param dataOut the sample at the time.
+     * @param cursor the cursor of a sequence of lookups.
+     * @return false if no data is available.
+     */
+    default boolean getData(long time, TransformInternal dataOut, Cursor cursor) {
+        return getData(time, dataOut);
+    }
+
     /**
      * \brief Insert data into the cache
      *
@@ -70,6 +102,15 @@ public interface TransformCache {
      */
     TimeAndFrameID getLatestTimeAndParent();
 
+    /**
+     * \brief Get the parent associated with the latest time stored in this
+     * cache. Returns 0 if no data. Unlike {@link #getLatestTimeAndParent()}
+     * this does not allocate.
+     *
+     * @return
+     */
+    int getLatestParent();
+
     // / Debugging information methods
     /**
      * @return Get the length of the stored list
@@ -87,4 +128,40 @@ public interface TransformCache {
     long getOldestTimestamp();
 
     boolean isValid();
+
+    /**
+     * @return the bytes taken by the stored samples, estimated for caches
+     * that do not keep them in primitive arrays.
+     */
+    default long getMemoryUsage() {
+        return 0;
+    }
+
+    /**
+     * Drops the oldest samples until at most the given number remains and
+     * keeps the history at that length from now on. At least
+     * {@link #MIN_SAMPLES} latest samples are kept, so lookups at the latest
+     * time and extrapolation keep working.
+     *
+     * @param maxSamples how many samples are kept at most.
+     * @return the bytes released.
+     */
+    default long limitSamples(int maxSamples) {
+        return 0;
+    }
+
+    /**
+     * @return the number of samples the history is limited to, see
+     * {@link #limitSamples(int)}.
+     */
+    default int getSampleLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if data was looked up since the previous call.
+     */
+    default boolean pollQueried() {
+        return false;
+    }
 }
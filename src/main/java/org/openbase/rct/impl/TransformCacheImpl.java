@@ -24,17 +24,80 @@ package org.openbase.rct.impl;
 
 import java.util.LinkedList;
 import java.util.List;
+
+import org.openbase.rct.TransformerConfig.InterpolationType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Transform history of a single frame stored in a linked list ordered from
+ * the latest to the oldest sample. All accessors are synchronized on the cache
+ * instance, so concurrent lookups on the same frame are serialized.
+ */
 public class TransformCacheImpl implements TransformCache {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformCacheImpl.class);
+
+    /**
+     * Estimated heap size of a stored sample: the list node, the sample,
+     * its translation and its rotation with compressed references.
+     */
+    private static final int BYTES_PER_SAMPLE = 24 + 40 + 40 + 48;
+
     private final long maxStorageTime;
+    private final int maxSamples;
+    private final long maxExtrapolation;
+    private final InterpolationType interpolationType;
+    private final long nearestTolerance;
     private final List<TransformInternal> storage_ = new LinkedList<>();
+    private int sampleLimit;
+    private boolean queried;
+
+    // temporary transforms of getData and getParent, reused per thread
+    private static final ThreadLocal<TransformInternal[]> TEMPS = ThreadLocal.withInitial(() -> new TransformInternal[]{new TransformInternal(), new TransformInternal(), new TransformInternal()});
 
     public TransformCacheImpl(long maxStorageTime) {
+        this(maxStorageTime, 0);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     */
+    public TransformCacheImpl(long maxStorageTime, long maxExtrapolation) {
+        this(maxStorageTime, maxExtrapolation, InterpolationType.SLERP, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     * @param interpolationType how lookups between two samples are resolved.
+     * @param nearestTolerance how far the closest sample may be away from
+     * the time of a lookup with {@link InterpolationType#NEAREST}.
+     */
+    public TransformCacheImpl(long maxStorageTime, long maxExtrapolation, InterpolationType interpolationType, long nearestTolerance) {
+        this(maxStorageTime, Integer.MAX_VALUE, maxExtrapolation, interpolationType, nearestTolerance);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxSamples how many samples are kept at most, the oldest
+     * samples are dropped first.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     * @param interpolationType how lookups between two samples are resolved.
+     * @param nearestTolerance how far the closest sample may be away from
+     * the time of a lookup with {@link InterpolationType#NEAREST}.
+     */
+    public TransformCacheImpl(long maxStorageTime, int maxSamples, long maxExtrapolation, InterpolationType interpolationType, long nearestTolerance) {
         this.maxStorageTime = maxStorageTime;
+        this.maxSamples = Math.max(maxSamples, 1);
+        this.sampleLimit = this.maxSamples;
+        this.maxExtrapolation = maxExtrapolation;
+        this.interpolationType = interpolationType;
+        this.nearestTolerance = nearestTolerance;
     }
 
     int findClosest(TransformInternal one, TransformInternal two,
@@ -59,9 +122,9 @@ public class TransformCacheImpl implements TransformCache {
                 one.replaceWith(ts);
                 LOGGER.debug("findClosest() storage has only one entry. Return it.");
                 return 1;
-            } else {
-                throw new RuntimeException("Lookup would require extrapolation at time " + target_time + ", but only time " + ts.stamp + " is in the buffer");
             }
+            // Lookup would require extrapolation
+            return 0;
         }
 
         long latest_time = storage_.get(0).stamp;
@@ -75,27 +138,26 @@ public class TransformCacheImpl implements TransformCache {
             one.replaceWith(storage_.get(storage_.size() - 1));
             LOGGER.debug("findClosest() found exact target time. Return it.");
             return 1;
-        } // Catch cases that would require extrapolation
-        else if (target_time > latest_time) {
-            throw new RuntimeException("Lookup would require extrapolation into the future.  Requested time " + target_time + " but the latest data is at time " + latest_time);
-        } else if (target_time < earliest_time) {
-            throw new RuntimeException("Lookup would require extrapolation into the future.  Requested time " + target_time + " but the latest data is at time " + earliest_time);
+        } // Catch cases that would require extrapolation, the caller tells
+        // past from future by the oldest and latest timestamp
+        else if (target_time > latest_time || target_time < earliest_time) {
+            return 0;
         }
 
         // At least 2 values stored
-        // Find the first value less than the target value
-        int storage_it = -1;
-        for (int i = 0; i < storage_.size(); i++) {
-            if (storage_.get(i).stamp <= target_time) {
-                storage_it = i;
+        // Find the first value less than the target value, iterating since
+        // indexed access to the linked list is linear itself
+        TransformInternal newer = null;
+        for (TransformInternal ts : storage_) {
+            if (ts.stamp <= target_time) {
+                // Finally the case were somewhere in the middle Guarenteed no extrapolation :-)
+                LOGGER.debug("findClosest() return the two closest.");
+                one.replaceWith(ts); // Older
+                two.replaceWith(newer); // Newer
                 break;
             }
+            newer = ts;
         }
-
-        // Finally the case were somewhere in the middle Guarenteed no extrapolation :-)
-        LOGGER.debug("findClosest() return the two closest.");
-        one.replaceWith(storage_.get(storage_it)); // Older
-        two.replaceWith(storage_.get(storage_it - 1)); // Newer
         return 2;
 
     }
@@ -114,49 +176,127 @@ public class TransformCacheImpl implements TransformCache {
         output.translation.interpolate(one.translation, two.translation, ratio);
 
         // Interpolate rotation
-        output.rotation.interpolate(one.rotation, two.rotation, ratio);
+        if (interpolationType == InterpolationType.NLERP) {
+            PoseMath.nlerp(one.rotation.x, one.rotation.y, one.rotation.z, one.rotation.w,
+                    two.rotation.x, two.rotation.y, two.rotation.z, two.rotation.w, ratio, output.rotation);
+        } else {
+            PoseMath.slerp(one.rotation.x, one.rotation.y, one.rotation.z, one.rotation.w,
+                    two.rotation.x, two.rotation.y, two.rotation.z, two.rotation.w, ratio, output.rotation);
+        }
 
         output.stamp = one.stamp;
         output.frame_id = one.frame_id;
         output.child_frame_id = one.child_frame_id;
+        output.extrapolated = false;
+    }
+
+    /**
+     * Extrapolates the two latest samples to a time after the latest one
+     * within the extrapolation horizon. A single sample, a change of the
+     * parent between them or a frame without interpolation holds the latest
+     * sample.
+     *
+     * @return false if the time is not within the horizon.
+     */
+    private boolean extrapolate(long time, TransformInternal output) {
+        if (storage_.isEmpty() || time == 0) {
+            return false;
+        }
+        final TransformInternal latest = storage_.get(0);
+        if (time <= latest.stamp || time - latest.stamp > maxExtrapolation) {
+            return false;
+        }
+        final TransformInternal previous = storage_.size() > 1 ? storage_.get(1) : null;
+        if (previous == null || previous.frame_id != latest.frame_id || previous.stamp == latest.stamp
+                || interpolationType == InterpolationType.HOLD || interpolationType == InterpolationType.NEAREST) {
+            output.replaceWith(latest);
+        } else {
+            interpolate(previous, latest, time, output);
+            output.rotation.normalize();
+        }
+        output.stamp = time;
+        output.extrapolated = true;
+        return true;
+    }
+
+    /**
+     * Resolves a time outside of the history to the closest sample, if the
+     * cache uses {@link InterpolationType#NEAREST} and it is within the
+     * tolerance.
+     */
+    private boolean nearestOutside(long time, TransformInternal output) {
+        if (interpolationType != InterpolationType.NEAREST || storage_.isEmpty() || time == 0) {
+            return false;
+        }
+        final TransformInternal latest = storage_.get(0);
+        final TransformInternal oldest = storage_.get(storage_.size() - 1);
+        final TransformInternal closest = time > latest.stamp ? latest : oldest;
+        if (Math.abs(closest.stamp - time) > nearestTolerance) {
+            return false;
+        }
+        output.replaceWith(closest);
+        return true;
     }
 
     @Override
-    public boolean getData(long time, TransformInternal data_out) {
-        TransformInternal p_temp_1 = new TransformInternal();
-        TransformInternal p_temp_2 = new TransformInternal();
+    public synchronized boolean getData(long time, TransformInternal data_out) {
+        queried = true;
+        return resolve(time, data_out);
+    }
 
-        LOGGER.debug("getData() find closest to time " + time);
-        try {
-            int num_nodes = findClosest(p_temp_1, p_temp_2, time);
+    /**
+     * Resolves the sample at the time without counting as a lookup, see
+     * {@link #pollQueried()}. Requires the monitor.
+     */
+    private boolean resolve(long time, TransformInternal data_out) {
+        final TransformInternal[] temps = TEMPS.get();
+        TransformInternal p_temp_1 = temps[0];
+        TransformInternal p_temp_2 = temps[1];
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("getData() find closest to time " + time);
+        }
+        int num_nodes = findClosest(p_temp_1, p_temp_2, time);
+        if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("getData() nodes: " + num_nodes);
-            if (num_nodes == 0) {
-                LOGGER.error("getData() no transform found");
-                return false;
-            } else if (num_nodes == 1) {
-                LOGGER.debug("getData() found exactly one transform");
+        }
+        if (num_nodes == 0) {
+            if (nearestOutside(time, data_out)) {
+                LOGGER.debug("getData() found the closest transform");
+                return true;
+            }
+            if (extrapolate(time, data_out)) {
+                LOGGER.debug("getData() extrapolated the latest transforms");
+                return true;
+            }
+            LOGGER.debug("getData() no transform found");
+            return false;
+        } else if (num_nodes == 1) {
+            LOGGER.debug("getData() found exactly one transform");
+            data_out.replaceWith(p_temp_1);
+        } else if (num_nodes == 2) {
+            if (p_temp_1.frame_id != p_temp_2.frame_id || interpolationType == InterpolationType.HOLD) {
                 data_out.replaceWith(p_temp_1);
-            } else if (num_nodes == 2) {
-                if (p_temp_1.frame_id == p_temp_2.frame_id) {
-                    LOGGER.debug("getData() found two transforms. Interpolate.");
-                    interpolate(p_temp_1, p_temp_2, time, data_out);
-                } else {
-                    data_out.replaceWith(p_temp_1);
+            } else if (interpolationType == InterpolationType.NEAREST) {
+                final TransformInternal closest = time - p_temp_1.stamp <= p_temp_2.stamp - time ? p_temp_1 : p_temp_2;
+                if (Math.abs(closest.stamp - time) > nearestTolerance) {
+                    LOGGER.debug("getData() closest transform is out of tolerance");
+                    return false;
                 }
+                data_out.replaceWith(closest);
             } else {
-                assert (false);
+                LOGGER.debug("getData() found two transforms. Interpolate.");
+                interpolate(p_temp_1, p_temp_2, time, data_out);
             }
-
-            return true;
-        } catch (RuntimeException ex) {
-            LOGGER.error("Could not get data. Reason: " + ex.getMessage());
-            LOGGER.debug("Could not get data", ex);
-            return false;
+        } else {
+            assert (false);
         }
+
+        return true;
     }
 
     @Override
-    public boolean insertData(TransformInternal new_data) {
+    public synchronized boolean insertData(TransformInternal new_data) {
         LOGGER.debug("insertData(): " + new_data);
         int storage_it = 0;
 
@@ -192,36 +332,30 @@ public class TransformCacheImpl implements TransformCache {
         LOGGER.debug("latest time: " + latest_time);
         LOGGER.debug("max storage time: " + maxStorageTime);
         LOGGER.debug("storage empty: " + storage_.isEmpty());
-        while (!storage_.isEmpty() && storage_.get(storage_.size() - 1).stamp + maxStorageTime < latest_time) {
+        while (storage_.size() > sampleLimit
+                || !storage_.isEmpty() && storage_.get(storage_.size() - 1).stamp + maxStorageTime < latest_time) {
             LOGGER.debug("remove last. stamp: " + storage_.get(storage_.size() - 1).stamp);
             storage_.remove(storage_.size() - 1);
         }
     }
 
     @Override
-    public void clearList() {
+    public synchronized void clearList() {
         storage_.clear();
     }
 
     @Override
-    public int getParent(long time) {
-        TransformInternal p_temp_1 = new TransformInternal();
-        TransformInternal p_temp_2 = new TransformInternal();
-        try {
-            int num_nodes = findClosest(p_temp_1, p_temp_2, time);
-            if (num_nodes == 0) {
-                return 0;
-            }
-
-            return p_temp_1.frame_id;
-        } catch (RuntimeException ex) {
-            LOGGER.error("Could not get parent", ex);
+    public synchronized int getParent(long time) {
+        // the same rules as the data, which is resolved into the last temp
+        final TransformInternal data = TEMPS.get()[2];
+        if (!resolve(time, data)) {
             return 0;
         }
+        return data.frame_id;
     }
 
     @Override
-    public TimeAndFrameID getLatestTimeAndParent() {
+    public synchronized TimeAndFrameID getLatestTimeAndParent() {
         if (storage_.isEmpty()) {
             return new TimeAndFrameID(0, 0);
         }
@@ -231,12 +365,20 @@ public class TransformCacheImpl implements TransformCache {
     }
 
     @Override
-    public int getListLength() {
+    public synchronized int getLatestParent() {
+        if (storage_.isEmpty()) {
+            return 0;
+        }
+        return storage_.get(0).frame_id;
+    }
+
+    @Override
+    public synchronized int getListLength() {
         return storage_.size();
     }
 
     @Override
-    public long getLatestTimestamp() {
+    public synchronized long getLatestTimestamp() {
         if (storage_.isEmpty()) {
             return 0l; // empty list case
         }
@@ -244,7 +386,7 @@ public class TransformCacheImpl implements TransformCache {
     }
 
     @Override
-    public long getOldestTimestamp() {
+    public synchronized long getOldestTimestamp() {
         if (storage_.isEmpty()) {
             return 0l; // empty list case
         }
@@ -257,7 +399,34 @@ public class TransformCacheImpl implements TransformCache {
     }
 
     @Override
-    public String toString() {
+    public synchronized long getMemoryUsage() {
+        return (long) storage_.size() * BYTES_PER_SAMPLE;
+    }
+
+    @Override
+    public synchronized long limitSamples(int maxSamples) {
+        final int before = storage_.size();
+        sampleLimit = Math.min(this.maxSamples, Math.max(maxSamples, MIN_SAMPLES));
+        if (!storage_.isEmpty()) {
+            pruneList();
+        }
+        return (long) (before - storage_.size()) * BYTES_PER_SAMPLE;
+    }
+
+    @Override
+    public synchronized int getSampleLimit() {
+        return sampleLimit;
+    }
+
+    @Override
+    public synchronized boolean pollQueried() {
+        final boolean result = queried;
+        queried = false;
+        return result;
+    }
+
+    @Override
+    public synchronized String toString() {
         return "TransformCacheImpl[maxStorageTime:" + maxStorageTime + ", storage:" + storage_.size() + "]";
     }
 }
@@ -48,6 +48,11 @@ public class TransformCacheNull implements TransformCache {
         return null;
     }
 
+    @Override
+    public int getLatestParent() {
+        return 0;
+    }
+
     @Override
     public int getListLength() {
         return 0;
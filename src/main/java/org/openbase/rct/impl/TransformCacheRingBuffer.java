@@ -0,0 +1,763 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.concurrent.locks.StampedLock;
+
+import org.openbase.rct.TransformerConfig.InterpolationType;
+import org.openbase.rct.TransformerConfig.Precision;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transform history of a single frame stored as a time ordered ring buffer.
+ * <p>
+ * Stamps and parents are kept in parallel primitive arrays, translations and
+ * rotations in one array of seven values per sample, stored as doubles or,
+ * to halve their memory, as floats. The logical index 0 refers to the oldest sample, the logical index
+ * {@code size - 1} to the latest one. In-order insertions are appended in
+ * constant time, pruning drops samples from the old end of the ring and
+ * lookups are resolved by a binary search over the stamps.
+ * <p>
+ * Lookups up to a configurable horizon after the latest sample are
+ * extrapolated from the two latest samples instead of failing.
+ * <p>
+ * The memory of a cache is its capacity times the bytes per sample. The
+ * capacity only grows while the history is shorter than its limit. It is
+ * halved once pruning leaves less than a quarter of it in use and is reduced
+ * along with the limit, see {@link #limitSamples(int)}.
+ * <p>
+ * The cache is thread safe. Insertions take the write lock of a
+ * {@link StampedLock}, all queries first try an optimistic read and only fall
+ * back to the read lock if an insertion interfered.
+ */
+public class TransformCacheRingBuffer implements TransformCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformCacheRingBuffer.class);
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Samples a cursor is moved forward one by one before the lookup falls
+     * back to a binary search.
+     */
+    private static final int CURSOR_SCAN = 8;
+
+    private final long maxStorageTime;
+    private final int maxSamples;
+    private final Precision precision;
+    private final long maxExtrapolation;
+    private final InterpolationType interpolationType;
+    private final long nearestTolerance;
+    private final StampedLock lock = new StampedLock();
+
+    private Ring ring;
+    // maxSamples or less if the history was limited, guarded by the lock
+    private int sampleLimit;
+    // set by lookups and cleared by pollQueried(), a lost update only
+    // affects which frame is limited first
+    private boolean queried;
+
+    public TransformCacheRingBuffer(long maxStorageTime) {
+        this(maxStorageTime, 0);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     */
+    public TransformCacheRingBuffer(long maxStorageTime, long maxExtrapolation) {
+        this(maxStorageTime, maxExtrapolation, InterpolationType.SLERP, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     * @param interpolationType how lookups between two samples are resolved.
+     * @param nearestTolerance how far the closest sample may be away from
+     * the time of a lookup with {@link InterpolationType#NEAREST}.
+     */
+    public TransformCacheRingBuffer(long maxStorageTime, long maxExtrapolation, InterpolationType interpolationType, long nearestTolerance) {
+        this(maxStorageTime, Integer.MAX_VALUE, Precision.DOUBLE, maxExtrapolation, interpolationType, nearestTolerance);
+    }
+
+    /**
+     * @param maxStorageTime how long samples are kept.
+     * @param maxSamples how many samples are kept at most, the oldest
+     * samples are dropped first.
+     * @param precision how translations and rotations are stored.
+     * @param maxExtrapolation how far lookups may extrapolate beyond the
+     * latest sample, 0 disables extrapolation.
+     * @param interpolationType how lookups between two samples are resolved.
+     * @param nearestTolerance how far the closest sample may be away from
+     * the time of a lookup with {@link InterpolationType#NEAREST}.
+     */
+    public TransformCacheRingBuffer(long maxStorageTime, int maxSamples, Precision precision, long maxExtrapolation, InterpolationType interpolationType, long nearestTolerance) {
+        this.maxStorageTime = maxStorageTime;
+        this.maxSamples = Math.max(maxSamples, 1);
+        this.precision = precision;
+        this.maxExtrapolation = maxExtrapolation;
+        this.interpolationType = interpolationType;
+        this.nearestTolerance = nearestTolerance;
+        this.sampleLimit = this.maxSamples;
+        this.ring = new Ring(INITIAL_CAPACITY);
+    }
+
+    /**
+     * The sample storage. All arrays share the same power of two capacity
+     * which never changes for an instance, growing and shrinking replace the
+     * whole ring. Because of this, reading a ring that is concurrently
+     * modified never leaves the array bounds, so optimistic reads are safe
+     * to perform.
+     */
+    private final class Ring {
+
+        private final long[] stamps;
+        private final int[] parents;
+        // the seven values of the pose of every sample, only one of both
+        // arrays exists depending on the precision
+        private final double[] values;
+        private final float[] floats;
+        private final int mask;
+
+        // physical index of the oldest sample
+        private int head;
+        private int size;
+        // number of samples dropped from the head, the logical index of a
+        // sample plus this count stays the same while newer samples arrive
+        private long removed;
+
+        private Ring(int capacity) {
+            stamps = new long[capacity];
+            parents = new int[capacity];
+            if (precision == Precision.FLOAT) {
+                values = null;
+                floats = new float[capacity * PoseMath.STRIDE];
+            } else {
+                values = new double[capacity * PoseMath.STRIDE];
+                floats = null;
+            }
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Maps a logical index (0 = oldest) to the physical array index.
+         */
+        private int physical(int logical) {
+            return (head + logical) & mask;
+        }
+
+        private long stampAt(int logical) {
+            return stamps[physical(logical)];
+        }
+
+        /**
+         * @return the logical index of the first sample with a stamp strictly
+         * greater than the given time, or {@code size} if there is none.
+         */
+        private int upperBound(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (stampAt(mid) <= time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the component (0 = x ... 6 = qw) of the pose of the sample
+         * at the physical index.
+         */
+        private double value(int physical, int component) {
+            final int i = physical * PoseMath.STRIDE + component;
+            return values != null ? values[i] : floats[i];
+        }
+
+        private void read(int logical, long time, TransformInternal dataOut) {
+            final int i = physical(logical);
+            dataOut.translation.set(value(i, 0), value(i, 1), value(i, 2));
+            dataOut.rotation.set(value(i, 3), value(i, 4), value(i, 5), value(i, 6));
+            dataOut.frame_id = parents[i];
+            dataOut.stamp = time;
+            dataOut.extrapolated = false;
+        }
+
+        private void write(int physical, TransformInternal data) {
+            stamps[physical] = data.stamp;
+            parents[physical] = data.frame_id;
+            final int o = physical * PoseMath.STRIDE;
+            if (values != null) {
+                PoseMath.set(values, o, data);
+            } else {
+                floats[o] = (float) data.translation.x;
+                floats[o + 1] = (float) data.translation.y;
+                floats[o + 2] = (float) data.translation.z;
+                floats[o + 3] = (float) data.rotation.x;
+                floats[o + 4] = (float) data.rotation.y;
+                floats[o + 5] = (float) data.rotation.z;
+                floats[o + 6] = (float) data.rotation.w;
+            }
+        }
+
+        private void copy(int fromPhysical, int toPhysical) {
+            stamps[toPhysical] = stamps[fromPhysical];
+            parents[toPhysical] = parents[fromPhysical];
+            final Object poses = values != null ? values : floats;
+            System.arraycopy(poses, fromPhysical * PoseMath.STRIDE, poses, toPhysical * PoseMath.STRIDE, PoseMath.STRIDE);
+        }
+
+        /**
+         * @return a ring of the given capacity, which has to hold all samples,
+         * with the same samples unrolled so that the oldest sample is stored
+         * at index 0.
+         */
+        private Ring resize(int capacity) {
+            final Ring resized = new Ring(capacity);
+            final int firstPart = Math.min(size, capacity() - head);
+            final int secondPart = size - firstPart;
+            System.arraycopy(stamps, head, resized.stamps, 0, firstPart);
+            System.arraycopy(stamps, 0, resized.stamps, firstPart, secondPart);
+            System.arraycopy(parents, head, resized.parents, 0, firstPart);
+            System.arraycopy(parents, 0, resized.parents, firstPart, secondPart);
+            final Object poses = values != null ? values : floats;
+            final Object resizedPoses = resized.values != null ? resized.values : resized.floats;
+            System.arraycopy(poses, head * PoseMath.STRIDE, resizedPoses, 0, firstPart * PoseMath.STRIDE);
+            System.arraycopy(poses, 0, resizedPoses, firstPart * PoseMath.STRIDE, secondPart * PoseMath.STRIDE);
+            resized.head = 0;
+            resized.size = size;
+            resized.removed = removed;
+            return resized;
+        }
+
+        private boolean getData(long time, TransformInternal dataOut) {
+            // No values stored
+            if (size == 0) {
+                return false;
+            }
+
+            // If time == 0 return the latest
+            if (time == 0) {
+                read(size - 1, stampAt(size - 1), dataOut);
+                return true;
+            }
+
+            final long latestTime = stampAt(size - 1);
+            final long earliestTime = stampAt(0);
+
+            if (time == latestTime) {
+                read(size - 1, time, dataOut);
+                return true;
+            } else if (time == earliestTime) {
+                read(0, time, dataOut);
+                return true;
+            } else if (time > latestTime) {
+                if (interpolationType == InterpolationType.NEAREST && time - latestTime <= nearestTolerance) {
+                    read(size - 1, time, dataOut);
+                    return true;
+                }
+                // lookup would require extrapolation into the future
+                if (time - latestTime > maxExtrapolation) {
+                    return false;
+                }
+                extrapolate(time, dataOut);
+                return true;
+            } else if (time < earliestTime) {
+                if (interpolationType == InterpolationType.NEAREST && earliestTime - time <= nearestTolerance) {
+                    read(0, time, dataOut);
+                    return true;
+                }
+                return false;
+            }
+
+            // at least two values are stored and the time is strictly in between
+            final int older = upperBound(time) - 1;
+            return getData(older, time, dataOut);
+        }
+
+        /**
+         * Same as {@link #getData(long, TransformInternal)}, but the older of
+         * the two samples around the time is searched forward from the given
+         * position of a previous lookup.
+         *
+         * @return the position of the older sample, which is the logical
+         * index plus {@link #removed}, or -1 if no data is available.
+         */
+        private long getData(long time, TransformInternal dataOut, long position) {
+            if (size < 2 || time == 0 || time >= stampAt(size - 1) || time <= stampAt(0)) {
+                if (!getData(time, dataOut)) {
+                    return -1;
+                }
+                // the next lookup of a sweep continues from the latest sample
+                return size > 0 && (time == 0 || time >= stampAt(size - 1)) ? size - 1 + removed : removed;
+            }
+
+            // the time is strictly in between the oldest and the latest
+            // sample, so the search stops before the latest sample
+            long logical = Math.min(position - removed, size - 2);
+            if (logical < 0 || stampAt((int) logical) > time) {
+                logical = upperBound(time) - 1;
+            } else {
+                int steps = 0;
+                while (logical + 1 < size - 1 && stampAt((int) logical + 1) <= time) {
+                    if (++steps > CURSOR_SCAN) {
+                        // the time is far ahead of the previous lookup
+                        logical = upperBound(time) - 1;
+                        break;
+                    }
+                    logical++;
+                }
+            }
+            final int older = (int) logical;
+            return getData(older, time, dataOut) ? older + removed : -1;
+        }
+
+        /**
+         * Resolves a time at or after the sample at the given logical index
+         * and before the next one with the interpolation of the cache.
+         *
+         * @return false if the closest sample is farther away than the
+         * nearest tolerance.
+         */
+        private boolean getData(int older, long time, TransformInternal dataOut) {
+            final int olderIndex = physical(older);
+            final int newerIndex = physical(older + 1);
+
+            if (stamps[olderIndex] == time || parents[olderIndex] != parents[newerIndex]) {
+                read(older, time, dataOut);
+                return true;
+            }
+
+            switch (interpolationType) {
+                case HOLD:
+                    read(older, time, dataOut);
+                    return true;
+                case NEAREST:
+                    final int nearest = nearest(older, time);
+                    if (Math.abs(stampAt(nearest) - time) > nearestTolerance) {
+                        return false;
+                    }
+                    read(nearest, time, dataOut);
+                    return true;
+                default:
+                    interpolate(olderIndex, newerIndex, time, dataOut);
+                    return true;
+            }
+        }
+
+        /**
+         * @return the logical index of the sample closest to the time, which
+         * lies between the sample at the given index and the next one.
+         */
+        private int nearest(int older, long time) {
+            return time - stampAt(older) <= stampAt(older + 1) - time ? older : older + 1;
+        }
+
+        private void interpolate(int one, int two, long time, TransformInternal output) {
+            final double ratio = (double) (time - stamps[one]) / (double) (stamps[two] - stamps[one]);
+
+            // interpolate translation
+            final double x1 = value(one, 0), y1 = value(one, 1), z1 = value(one, 2);
+            output.translation.set(
+                    x1 + ratio * (value(two, 0) - x1),
+                    y1 + ratio * (value(two, 1) - y1),
+                    z1 + ratio * (value(two, 2) - z1));
+
+            // interpolate rotation
+            if (interpolationType == InterpolationType.NLERP) {
+                PoseMath.nlerp(value(one, 3), value(one, 4), value(one, 5), value(one, 6),
+                        value(two, 3), value(two, 4), value(two, 5), value(two, 6), ratio, output.rotation);
+            } else {
+                PoseMath.slerp(value(one, 3), value(one, 4), value(one, 5), value(one, 6),
+                        value(two, 3), value(two, 4), value(two, 5), value(two, 6), ratio, output.rotation);
+            }
+
+            output.frame_id = parents[one];
+            output.stamp = time;
+            output.extrapolated = false;
+        }
+
+        /**
+         * Extrapolates the two latest samples to a time after the latest
+         * one, the translation linearly and the rotation with the angular
+         * velocity between them. A single sample, a change of the parent
+         * between them or a frame without interpolation holds the latest
+         * sample.
+         */
+        private void extrapolate(long time, TransformInternal output) {
+            final int latest = size - 1;
+            final int latestIndex = physical(latest);
+            if (size < 2 || interpolationType == InterpolationType.HOLD || interpolationType == InterpolationType.NEAREST) {
+                read(latest, time, output);
+            } else {
+                final int previousIndex = physical(latest - 1);
+                if (parents[previousIndex] != parents[latestIndex] || stamps[previousIndex] == stamps[latestIndex]) {
+                    read(latest, time, output);
+                } else {
+                    interpolate(previousIndex, latestIndex, time, output);
+                    output.rotation.normalize();
+                }
+            }
+            output.extrapolated = true;
+        }
+
+        private void insert(TransformInternal newData) {
+            if (size == 0 || newData.stamp >= stampAt(size - 1)) {
+                // in order: plain append
+                write(physical(size), newData);
+            } else {
+                // out of order: shift the newer samples by one
+                final int position = upperBound(newData.stamp);
+                for (int i = size; i > position; i--) {
+                    copy(physical(i - 1), physical(i));
+                }
+                write(physical(position), newData);
+            }
+            size++;
+        }
+
+        private void prune(long maxStorageTime, int maxSamples) {
+            final long latestTime = stampAt(size - 1);
+            while (size > maxSamples || size > 0 && stamps[head] + maxStorageTime < latestTime) {
+                dropOldest();
+            }
+        }
+
+        private void dropOldest() {
+            head = (head + 1) & mask;
+            size--;
+            removed++;
+        }
+
+        private int getParent(long time) {
+            if (size == 0) {
+                return 0;
+            }
+            if (time == 0) {
+                return parents[physical(size - 1)];
+            }
+            final boolean nearest = interpolationType == InterpolationType.NEAREST;
+            if (time > stampAt(size - 1)) {
+                // lookup would require extrapolation into the future
+                final long distance = time - stampAt(size - 1);
+                return distance <= maxExtrapolation || nearest && distance <= nearestTolerance ? parents[physical(size - 1)] : 0;
+            }
+            if (time < stampAt(0)) {
+                return nearest && stampAt(0) - time <= nearestTolerance ? parents[physical(0)] : 0;
+            }
+            final int older = Math.max(upperBound(time) - 1, 0);
+            if (!nearest || older == size - 1 || stampAt(older) == time || parents[physical(older)] != parents[physical(older + 1)]) {
+                return parents[physical(older)];
+            }
+            final int closest = nearest(older, time);
+            return Math.abs(stampAt(closest) - time) <= nearestTolerance ? parents[physical(closest)] : 0;
+        }
+
+        private int getLatestParent() {
+            if (size == 0) {
+                return 0;
+            }
+            return parents[physical(size - 1)];
+        }
+
+        private long getLatestTimestamp() {
+            if (size == 0) {
+                return 0l; // empty list case
+            }
+            return stampAt(size - 1);
+        }
+
+        private long getOldestTimestamp() {
+            if (size == 0) {
+                return 0l; // empty list case
+            }
+            return stampAt(0);
+        }
+    }
+
+    @Override
+    public boolean getData(long time, TransformInternal dataOut) {
+        if (!queried) {
+            queried = true;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final boolean result = ring.getData(time, dataOut);
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.getData(time, dataOut);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean getData(long time, TransformInternal dataOut, Cursor cursor) {
+        if (!queried) {
+            queried = true;
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final long position = ring.getData(time, dataOut, cursor.position);
+            if (lock.validate(stamp)) {
+                cursor.position = position;
+                return position >= 0;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            final long position = ring.getData(time, dataOut, cursor.position);
+            cursor.position = position;
+            return position >= 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean insertData(TransformInternal newData) {
+        final long stamp = lock.writeLock();
+        try {
+            if (ring.size > 0 && ring.stampAt(ring.size - 1) > newData.stamp + maxStorageTime) {
+                LOGGER.error("data too old for insertion");
+                return false;
+            }
+
+            if (ring.size == ring.capacity()) {
+                if (ring.capacity() < sampleLimit) {
+                    ring = ring.resize(ring.capacity() << 1);
+                } else {
+                    ring.dropOldest();
+                }
+            }
+
+            ring.insert(newData);
+            ring.prune(maxStorageTime, sampleLimit);
+            if (ring.capacity() > INITIAL_CAPACITY && ring.size < ring.capacity() >> 2) {
+                ring = ring.resize(ring.capacity() >> 1);
+            }
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clearList() {
+        final long stamp = lock.writeLock();
+        try {
+            final Ring cleared = new Ring(Math.min(INITIAL_CAPACITY, ring.capacity()));
+            cleared.removed = ring.removed + ring.size;
+            ring = cleared;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int getParent(long time) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int parent = ring.getParent(time);
+            if (lock.validate(stamp)) {
+                return parent;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.getParent(time);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public TimeAndFrameID getLatestTimeAndParent() {
+        final long stamp = lock.readLock();
+        try {
+            return new TimeAndFrameID(ring.getLatestTimestamp(), ring.getLatestParent());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int getLatestParent() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int parent = ring.getLatestParent();
+            if (lock.validate(stamp)) {
+                return parent;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.getLatestParent();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public int getListLength() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int size = ring.size;
+            if (lock.validate(stamp)) {
+                return size;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getLatestTimestamp() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final long time = ring.getLatestTimestamp();
+            if (lock.validate(stamp)) {
+                return time;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.getLatestTimestamp();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getOldestTimestamp() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final long time = ring.getOldestTimestamp();
+            if (lock.validate(stamp)) {
+                return time;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ring.getOldestTimestamp();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isValid() {
+        return true;
+    }
+
+    private int bytesPerSample() {
+        // stamp, parent and seven pose values
+        return Long.BYTES + Integer.BYTES + PoseMath.STRIDE * (precision == Precision.FLOAT ? Float.BYTES : Double.BYTES);
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            final int capacity = ring.capacity();
+            if (lock.validate(stamp)) {
+                return (long) capacity * bytesPerSample();
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return (long) ring.capacity() * bytesPerSample();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long limitSamples(int maxSamples) {
+        final long stamp = lock.writeLock();
+        try {
+            final int before = ring.capacity();
+            sampleLimit = Math.min(this.maxSamples, Math.max(maxSamples, MIN_SAMPLES));
+            while (ring.size > sampleLimit) {
+                ring.dropOldest();
+            }
+            if (sampleLimit < before) {
+                // the smallest power of two that holds the limit
+                final int capacity = Integer.highestOneBit(Math.max(sampleLimit - 1, 1)) << 1;
+                if (capacity < before) {
+                    ring = ring.resize(capacity);
+                }
+            }
+            return (long) (before - ring.capacity()) * bytesPerSample();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int getSampleLimit() {
+        final long stamp = lock.readLock();
+        try {
+            return sampleLimit;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean pollQueried() {
+        final boolean result = queried;
+        if (result) {
+            queried = false;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final long stamp = lock.readLock();
+        try {
+            return "TransformCacheRingBuffer[maxStorageTime:" + maxStorageTime + ", maxSamples:" + maxSamples + ", sampleLimit:" + sampleLimit + ", precision:" + precision + ", maxExtrapolation:" + maxExtrapolation + ", interpolation:" + interpolationType + ", storage:" + ring.size + ", capacity:" + ring.capacity() + "]";
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+import org.openbase.rct.TransformerConfig.InterpolationType;
+import org.openbase.rct.TransformerConfig.Precision;
+
+public class TransformCacheRingBufferTest {
+
+	private static TransformInternal sample(double x, long time) {
+		return new TransformInternal(new Vector3d(x, 0, 0), new Quat4d(0, 0, 0, 1), 1, 2, time);
+	}
+
+	@Test
+	public void testInOrderAndOutOfOrderInsert() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(100000);
+		for (int i = 0; i < 100; i++) {
+			if (i == 50) {
+				continue;
+			}
+			assertTrue(cache.insertData(sample(i, i * 10)));
+		}
+		// late sample lands in the middle of the history
+		assertTrue(cache.insertData(sample(50, 500)));
+
+		assertEquals(100, cache.getListLength());
+		assertEquals(0, cache.getOldestTimestamp());
+		assertEquals(990, cache.getLatestTimestamp());
+
+		TransformInternal out = new TransformInternal();
+		for (int i = 0; i < 99; i++) {
+			assertTrue(cache.getData(i * 10 + 5, out));
+			assertEquals(i + 0.5, out.translation.x, 1e-9);
+			assertEquals(i * 10 + 5, out.stamp);
+		}
+	}
+
+	@Test
+	public void testExtrapolationAndLatest() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(1000);
+		TransformInternal out = new TransformInternal();
+		assertFalse(cache.getData(0, out));
+
+		cache.insertData(sample(1, 10));
+		assertFalse(cache.getData(5, out));
+		assertTrue(cache.getData(10, out));
+
+		cache.insertData(sample(2, 20));
+		assertFalse(cache.getData(21, out));
+		assertFalse(cache.getData(9, out));
+		assertTrue(cache.getData(0, out));
+		assertEquals(2, out.translation.x, 0);
+		assertEquals(20, out.stamp);
+		assertEquals(1, cache.getParent(15));
+	}
+
+	@Test
+	public void testBoundedExtrapolation() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(1000, 50);
+		TransformInternal out = new TransformInternal();
+		cache.insertData(sample(1, 10));
+		// a single sample is held
+		assertTrue(cache.getData(30, out));
+		assertEquals(1, out.translation.x, 0);
+		assertTrue(out.extrapolated);
+
+		// the translation continues linearly, the rotation with its angular velocity
+		cache.insertData(new TransformInternal(new Vector3d(2, 0, 0), new Quat4d(0, 0, Math.sin(0.1), Math.cos(0.1)), 1, 2, 20));
+		assertTrue(cache.getData(40, out));
+		assertTrue(out.extrapolated);
+		assertEquals(40, out.stamp);
+		assertEquals(4, out.translation.x, 1e-9);
+		assertEquals(Math.sin(0.3), out.rotation.z, 1e-9);
+		assertEquals(Math.cos(0.3), out.rotation.w, 1e-9);
+		assertEquals(1, cache.getParent(70));
+
+		// beyond the horizon and in the past lookups still fail
+		assertFalse(cache.getData(71, out));
+		assertFalse(cache.getData(5, out));
+		assertEquals(0, cache.getParent(71));
+		assertTrue(cache.getData(15, out));
+		assertFalse(out.extrapolated);
+
+		TransformCache.Cursor cursor = new TransformCache.Cursor();
+		assertTrue(cache.getData(60, out, cursor));
+		assertEquals(6, out.translation.x, 1e-9);
+		assertTrue(out.extrapolated);
+	}
+
+	@Test
+	public void testInterpolationTypes() {
+		final Quat4d q1 = new Quat4d(0, 0, 0, 1);
+		final Quat4d q2 = new Quat4d(0, 0, Math.sin(0.2), Math.cos(0.2));
+		final TransformCacheRingBuffer hold = new TransformCacheRingBuffer(1000, 0, InterpolationType.HOLD, 0);
+		final TransformCacheRingBuffer nearest = new TransformCacheRingBuffer(1000, 0, InterpolationType.NEAREST, 10);
+		final TransformCacheRingBuffer nlerp = new TransformCacheRingBuffer(1000, 0, InterpolationType.NLERP, 0);
+		final TransformCacheRingBuffer slerp = new TransformCacheRingBuffer(1000, 0, InterpolationType.SLERP, 0);
+		for (TransformCache cache : new TransformCache[]{hold, nearest, nlerp, slerp}) {
+			cache.insertData(new TransformInternal(new Vector3d(1, 0, 0), new Quat4d(q1), 1, 2, 100));
+			cache.insertData(new TransformInternal(new Vector3d(2, 0, 0), new Quat4d(q2), 1, 2, 200));
+		}
+
+		TransformInternal out = new TransformInternal();
+		assertTrue(hold.getData(190, out));
+		assertEquals(1, out.translation.x, 0);
+		assertFalse(hold.getData(201, out));
+
+		// the closest sample within the tolerance, also just outside the history
+		assertTrue(nearest.getData(108, out));
+		assertEquals(1, out.translation.x, 0);
+		assertTrue(nearest.getData(195, out));
+		assertEquals(2, out.translation.x, 0);
+		assertTrue(nearest.getData(210, out));
+		assertEquals(2, out.translation.x, 0);
+		assertEquals(1, nearest.getParent(92));
+		assertFalse(nearest.getData(150, out));
+		assertFalse(nearest.getData(211, out));
+		assertEquals(0, nearest.getParent(150));
+
+		TransformInternal expected = new TransformInternal();
+		assertTrue(slerp.getData(130, expected));
+		assertTrue(nlerp.getData(130, out));
+		assertEquals(1.3, out.translation.x, 1e-12);
+		assertTrue(expected.rotation.epsilonEquals(out.rotation, 1e-3));
+		assertEquals(1, out.rotation.x * out.rotation.x + out.rotation.y * out.rotation.y + out.rotation.z * out.rotation.z + out.rotation.w * out.rotation.w, 1e-12);
+	}
+
+	@Test
+	public void testMaxSamplesAndFloatPrecision() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(100000, 20, Precision.FLOAT, 0, InterpolationType.SLERP, 0);
+		TransformCache.Cursor cursor = new TransformCache.Cursor();
+		TransformInternal out = new TransformInternal();
+		for (int i = 0; i < 100; i++) {
+			cache.insertData(sample(i + 0.1, 10 * i));
+			assertEquals(Math.min(i + 1, 20), cache.getListLength());
+			assertTrue(cache.getData(10 * i - 5, out, cursor) || i == 0);
+		}
+		assertEquals(800, cache.getOldestTimestamp());
+		assertFalse(cache.getData(795, out));
+		assertTrue(cache.getData(805, out));
+		assertEquals(80.6, out.translation.x, 1e-5);
+		assertEquals(1, out.rotation.w, 0);
+	}
+
+	@Test
+	public void testOnlySampleLookupsCountAsQueried() {
+		for (TransformCache cache : new TransformCache[]{new TransformCacheRingBuffer(1000), new TransformCacheImpl(1000)}) {
+			cache.insertData(sample(1, 10));
+			cache.insertData(sample(2, 20));
+			assertEquals(1, cache.getParent(15));
+			assertEquals(1, cache.getLatestParent());
+			assertFalse(cache.pollQueried());
+
+			assertTrue(cache.getData(15, new TransformInternal()));
+			assertTrue(cache.pollQueried());
+			assertFalse(cache.pollQueried());
+		}
+	}
+
+	@Test
+	public void testLimitSamples() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(100000);
+		for (int i = 0; i < 100; i++) {
+			cache.insertData(sample(i, 10 * i));
+		}
+		// 128 samples of a stamp, a parent and seven doubles
+		assertEquals(128 * 68, cache.getMemoryUsage());
+		assertEquals(128 * 68 - 32 * 68, cache.limitSamples(20));
+		assertEquals(20, cache.getListLength());
+		assertEquals(800, cache.getOldestTimestamp());
+		for (int i = 100; i < 200; i++) {
+			cache.insertData(sample(i, 10 * i));
+		}
+		assertEquals(20, cache.getListLength());
+		assertEquals(32 * 68, cache.getMemoryUsage());
+
+		// the latest samples are always kept
+		cache.limitSamples(0);
+		assertEquals(TransformCache.MIN_SAMPLES, cache.getListLength());
+		TransformInternal out = new TransformInternal();
+		assertTrue(cache.getData(1985, out));
+		assertEquals(198.5, out.translation.x, 1e-9);
+	}
+
+	@Test
+	public void testPruneAndWrapAround() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(50);
+		for (int i = 0; i < 1000; i++) {
+			cache.insertData(sample(i, i));
+		}
+		assertEquals(51, cache.getListLength());
+		assertEquals(949, cache.getOldestTimestamp());
+		assertEquals(999, cache.getLatestTimestamp());
+
+		// too old for insertion
+		assertFalse(cache.insertData(sample(0, 900)));
+
+		TransformInternal out = new TransformInternal();
+		assertTrue(cache.getData(975, out));
+		assertEquals(975, out.translation.x, 1e-9);
+	}
+
+	@Test
+	public void testCursorFollowsInsertsAndPruning() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(100);
+		TransformCache.Cursor cursor = new TransformCache.Cursor();
+		TransformInternal expected = new TransformInternal();
+		TransformInternal out = new TransformInternal();
+		for (int i = 0; i < 1000; i++) {
+			cache.insertData(sample(i, 10 * i));
+			if (i % 10 == 3) {
+				// a late sample shifts the newer samples
+				cache.insertData(sample(i - 0.5, 10 * i - 5));
+			}
+			// sweep over the recent history, sometimes rewinding
+			final long from = Math.max(0, 10 * i - 60);
+			for (long time = i % 7 == 0 ? from - 20 : from; time <= 10 * i; time += 3) {
+				final boolean available = cache.getData(time, expected);
+				assertEquals(available, cache.getData(time, out, cursor));
+				if (available) {
+					assertEquals(expected.translation.x, out.translation.x, 1e-9);
+					assertEquals(expected.stamp, out.stamp);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCursorContinuesAfterLatestLookup() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(100000, 50);
+		for (int i = 0; i < 100; i++) {
+			cache.insertData(sample(i, 10 * i));
+		}
+		TransformCache.Cursor cursor = new TransformCache.Cursor();
+		TransformInternal out = new TransformInternal();
+		// a sweep ending after the latest sample
+		assertTrue(cache.getData(1010, out, cursor));
+		assertEquals(99, cursor.position);
+		assertTrue(cache.getData(985, out, cursor));
+		assertEquals(98, cursor.position);
+		assertEquals(98.5, out.translation.x, 1e-9);
+		assertTrue(cache.getData(0, out, cursor));
+		assertEquals(99, cursor.position);
+		assertTrue(cache.getData(0, out, new TransformCache.Cursor()));
+
+		// far ahead of the cursor
+		assertTrue(cache.getData(5, out, cursor));
+		assertEquals(0, cursor.position);
+		assertTrue(cache.getData(905, out, cursor));
+		assertEquals(90, cursor.position);
+		assertEquals(90.5, out.translation.x, 1e-9);
+	}
+
+	@Test
+	public void testSlerpMatchesVecmath() {
+		TransformCacheRingBuffer cache = new TransformCacheRingBuffer(1000);
+		Quat4d q1 = new Quat4d(0, 0, 0, 1);
+		Quat4d q2 = new Quat4d(0, 0, 1, 1);
+		cache.insertData(new TransformInternal(new Vector3d(), new Quat4d(q1), 1, 2, 0));
+		cache.insertData(new TransformInternal(new Vector3d(), new Quat4d(q2), 1, 2, 100));
+
+		TransformInternal out = new TransformInternal();
+		assertTrue(cache.getData(30, out));
+
+		Quat4d expected = new Quat4d();
+		expected.interpolate(q1, q2, 0.3);
+		assertTrue(expected.epsilonEquals(out.rotation, 1e-12));
+	}
+}
@@ -27,7 +27,8 @@ import org.slf4j.LoggerFactory;
 
 public class TransformCacheStatic implements TransformCache {
 
-    private TransformInternal storage = new TransformInternal();
+    // replaced as a whole on insertion, so readers always see a complete sample
+    private volatile TransformInternal storage = new TransformInternal();
     private static final Logger LOGGER = LoggerFactory.getLogger(TransformCacheImpl.class);
 
     public TransformCacheStatic() {
@@ -61,6 +62,11 @@ public class TransformCacheStatic implements TransformCache {
         return new TimeAndFrameID(0, storage.frame_id);
     }
 
+    @Override
+    public int getLatestParent() {
+        return storage.frame_id;
+    }
+
     @Override
     public int getListLength() {
         return 1;
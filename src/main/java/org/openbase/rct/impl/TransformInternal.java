@@ -34,6 +34,8 @@ public class TransformInternal {
     long stamp = 0;
     int frame_id = 0;
     int child_frame_id = 0;
+    // set by caches that extrapolated the sample beyond their latest one
+    boolean extrapolated = false;
 
     public TransformInternal() {
 
@@ -63,12 +65,20 @@ public class TransformInternal {
         this.stamp = rhs.stamp;
     }
 
+    /**
+     * Copies the values of the given transform into this instance. The vectors
+     * are copied by value, so caches that fill a reused output instance never
+     * share state with the stored samples.
+     *
+     * @param rhs the transform to copy from.
+     */
     public void replaceWith(TransformInternal rhs) {
-        this.translation = rhs.translation;
-        this.rotation = rhs.rotation;
+        this.translation.set(rhs.translation);
+        this.rotation.set(rhs.rotation);
         this.frame_id = rhs.frame_id;
         this.child_frame_id = rhs.child_frame_id;
         this.stamp = rhs.stamp;
+        this.extrapolated = rhs.extrapolated;
     }
 
     @Override
@@ -22,13 +22,9 @@ package org.openbase.rct.impl;
  * #L%
  */
 
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import org.openbase.jul.schedule.SyncObject;
 import org.openbase.rct.Transform;
 
 public class TransformRequest {
@@ -38,11 +34,48 @@ public class TransformRequest {
     public long time;
     public FutureTransform future;
 
+    /**
+     * Executor the future is completed on, so the callbacks of the caller run
+     * there. Null to complete it on the resolving thread.
+     */
+    public Executor executor;
+
     public TransformRequest(String targetFrame, String sourceFrame, long time, FutureTransform future) {
+        this(targetFrame, sourceFrame, time, future, null);
+    }
+
+    public TransformRequest(String targetFrame, String sourceFrame, long time, FutureTransform future, Executor executor) {
         this.target_frame = targetFrame;
         this.source_frame = sourceFrame;
         this.time = time;
         this.future = future;
+        this.executor = executor;
+    }
+
+    /**
+     * Completes the future with the transform on the executor of the request.
+     *
+     * @param transform the answer of the request.
+     */
+    public void complete(final Transform transform) {
+        if (executor == null) {
+            future.set(transform);
+        } else {
+            executor.execute(() -> future.set(transform));
+        }
+    }
+
+    /**
+     * Completes the future exceptionally on the executor of the request.
+     *
+     * @param cause the reason the request could not be answered.
+     */
+    public void fail(final Throwable cause) {
+        if (executor == null) {
+            future.completeExceptionally(cause);
+        } else {
+            executor.execute(() -> future.completeExceptionally(cause));
+        }
     }
 
     @Override
@@ -50,88 +83,10 @@ public class TransformRequest {
         return getClass().getSimpleName() + "[" + source_frame + " -> " + target_frame + " at " + time + " solved[" + future.isDone() + "]]";
     }
 
-    static public class FutureTransform implements Future<Transform> {
-
-        private Transform transform = null;
-        private final Object lock = new SyncObject("FutureTransform");
-        private boolean cancelled = false;
-        private boolean interrupt = false;
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            synchronized (lock) {
-                cancelled = true;
-                if (mayInterruptIfRunning) {
-                    interrupt = true;
-                }
-                lock.notifyAll();
-                return true;
-            }
-        }
+    static public class FutureTransform extends CompletableFuture<Transform> {
 
         public void set(Transform t) {
-            synchronized (lock) {
-                transform = t;
-                lock.notifyAll();
-            }
-        }
-
-        @Override
-        public Transform get() throws InterruptedException, ExecutionException {
-            synchronized (lock) {
-
-                if (transform != null) {
-                    return transform;
-                }
-
-                if (cancelled) {
-                    throw new CancellationException();
-                }
-
-                lock.wait();
-
-                if (cancelled) {
-                    throw new CancellationException();
-                }
-
-                return transform;
-            }
-        }
-
-        @Override
-        public Transform get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-            synchronized (lock) {
-
-                if (transform != null) {
-                    return transform;
-                }
-
-                if (cancelled) {
-                    throw new CancellationException();
-                }
-
-                lock.wait(TimeUnit.MILLISECONDS.convert(timeout, unit));
-
-                if (cancelled) {
-                    throw new CancellationException();
-                }
-
-                if (transform == null) {
-                    throw new TimeoutException();
-                }
-
-                return transform;
-            }
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return cancelled;
-        }
-
-        @Override
-        public boolean isDone() {
-            return cancelled || transform != null;
+            complete(t);
         }
     }
 }
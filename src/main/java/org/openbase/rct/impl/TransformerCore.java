@@ -22,10 +22,22 @@ package org.openbase.rct.impl;
  * #L%
  */
 
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import org.openbase.rct.FrameHandle;
+import org.openbase.rct.FramePoses;
+import org.openbase.rct.LookupStatus;
+import org.openbase.rct.MutableTransform;
+import org.openbase.rct.Pose;
 import org.openbase.rct.Transform;
+import org.openbase.rct.TransformCursor;
+import org.openbase.rct.TransformSubscription;
 import org.openbase.rct.TransformerException;
 
 public interface TransformerCore extends TransformListener {
@@ -57,6 +69,20 @@ public interface TransformerCore extends TransformListener {
      */
     Transform lookupTransform(String targetFrame, String sourceFrame, long time) throws TransformerException;
 
+    /**
+     * Get the transform between two frames by frame ID and store it in a
+     * caller supplied holder. Once the frames are known, this lookup does
+     * not allocate, so it can be used in high frequency loops that reuse one
+     * holder instance.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform between the frames is written to
+     * @throws TransformerException is thrown if the transformation is not available.
+     */
+    void lookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result) throws TransformerException;
+
     /**
      * Get the transform between two frames by frame ID assuming fixed frame.
      *
@@ -82,6 +108,190 @@ public interface TransformerCore extends TransformListener {
      */
     Future<Transform> requestTransform(String targetFrame, String sourceFrame, long time);
 
+    /**
+     * Get the transforms from many frames into one frame by frame ID. All
+     * transforms are looked up on the same state of the frame tree. At a
+     * fixed time the parts of the tree that the frames share are only walked
+     * once.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrames The frames where the data originated
+     * @param time The time at which the value of the transforms is desired. (0 will get the latest of every pair)
+     * @return The transforms from the source frames in the same order
+     * @throws TransformerException is thrown if any of the transformations is not available.
+     */
+    Transform[] lookupTransforms(String targetFrame, String[] sourceFrames, long time) throws TransformerException;
+
+    /**
+     * Get the transforms from many frames into one frame by frame handle and
+     * store them in caller supplied holders, see
+     * {@link #lookupTransforms(String, String[], long)}.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrames The frames where the data originated
+     * @param time The time at which the value of the transforms is desired. (0 will get the latest of every pair)
+     * @param results The holders the transforms are written to, at least one per source frame
+     * @throws TransformerException is thrown if any of the transformations is not available.
+     */
+    void lookupTransforms(FrameHandle targetFrame, FrameHandle[] sourceFrames, long time, MutableTransform[] results) throws TransformerException;
+
+    /**
+     * Get the poses of all frames relative to the root of their tree. The
+     * tree is evaluated once from the roots downwards, so every frame reuses
+     * the composed pose of its parent.
+     *
+     * @param time The time of the poses. (0 will use the latest sample of every frame)
+     * @return The poses keyed by frame handle
+     * @throws TransformerException is thrown if the tree contains a loop.
+     */
+    FramePoses lookupFramePoses(long time) throws TransformerException;
+
+    /**
+     * Get the transform between two frames by frame handle.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return The transform between the frames
+     * @throws TransformerException is thrown if the transformation is not available.
+     */
+    Transform lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException;
+
+    /**
+     * Get the transform between two frames by frame handle and store it in a
+     * caller supplied holder.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform between the frames is written to
+     * @throws TransformerException is thrown if the transformation is not available.
+     */
+    void lookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result) throws TransformerException;
+
+    /**
+     * Look up the transform between two frames without throwing. Failures are
+     * reported by the returned status only, neither exceptions nor messages
+     * are created for them.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform is written to, untouched unless the status is {@link LookupStatus#OK}
+     * @return The status of the lookup
+     */
+    LookupStatus tryLookupTransform(String targetFrame, String sourceFrame, long time, MutableTransform result);
+
+    /**
+     * Look up the transform between two frames by frame handle without
+     * throwing.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param result The holder the transform is written to, untouched unless the status is {@link LookupStatus#OK}
+     * @return The status of the lookup
+     */
+    LookupStatus tryLookupTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, MutableTransform result);
+
+    /**
+     * Get the transform between two frames by frame handle as immutable pose.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return The pose of the source frame in the target frame
+     * @throws TransformerException is thrown if the transformation is not available.
+     */
+    Pose lookupPose(FrameHandle targetFrame, FrameHandle sourceFrame, long time) throws TransformerException;
+
+    /**
+     * Open a cursor that looks up the transform between two frames at a
+     * sequence of non decreasing times.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @return The cursor, to be used by one thread only
+     */
+    TransformCursor openCursor(FrameHandle targetFrame, FrameHandle sourceFrame);
+
+    /**
+     * Request the transform between two frames by frame handle.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @return A future object representing the request status and transform between the frames
+     */
+    Future<Transform> requestTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time);
+
+    /**
+     * Request the transform between two frames by frame ID. The request is
+     * removed as soon as the future is cancelled or its deadline passes.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param timeout The time after which the future fails with a TimeoutException, 0 to wait forever
+     * @param unit The unit of the timeout
+     * @param executor The executor the future is completed on, so dependent stages run there. Null to complete it on a thread pool shared by all transformers.
+     * @return A future of the transform between the frames
+     */
+    CompletableFuture<Transform> requestTransform(String targetFrame, String sourceFrame, long time, long timeout, TimeUnit unit, Executor executor);
+
+    /**
+     * Request the transform between two frames by frame handle, see
+     * {@link #requestTransform(String, String, long, long, TimeUnit, Executor)}.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param time The time at which the value of the transform is desired. (0 will get the latest)
+     * @param timeout The time after which the future fails with a TimeoutException, 0 to wait forever
+     * @param unit The unit of the timeout
+     * @param executor The executor the future is completed on. Null to complete it on a thread pool shared by all transformers.
+     * @return A future of the transform between the frames
+     */
+    CompletableFuture<Transform> requestTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time, long timeout, TimeUnit unit, Executor executor);
+
+    /**
+     * Subscribe to the latest transform between two frames by frame ID. The
+     * consumer receives a new transform whenever a frame on the path between
+     * the frames receives data. Updates that arrive while the consumer is
+     * busy or faster than the maximal rate are merged into one delivery of
+     * the latest transform.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param maxRate The maximal number of deliveries per second, 0 for no limit
+     * @param executor The executor the consumer runs on. Null to run it on a thread pool shared by all transformers.
+     * @param consumer The consumer of the transforms
+     * @return The subscription, which has to be cancelled to stop the updates
+     */
+    TransformSubscription subscribeTransform(String targetFrame, String sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer);
+
+    /**
+     * Subscribe to the latest transform between two frames by frame handle,
+     * see {@link #subscribeTransform(String, String, double, Executor, Consumer)}.
+     *
+     * @param targetFrame The frame to which data should be transformed
+     * @param sourceFrame The frame where the data originated
+     * @param maxRate The maximal number of deliveries per second, 0 for no limit
+     * @param executor The executor the consumer runs on, null for the shared thread pool
+     * @param consumer The consumer of the transforms
+     * @return The subscription, which has to be cancelled to stop the updates
+     */
+    TransformSubscription subscribeTransform(FrameHandle targetFrame, FrameHandle sourceFrame, double maxRate, Executor executor, Consumer<Transform> consumer);
+
+    /**
+     * Test if a transform is possible
+     *
+     * @param targetFrame The frame into which to transform
+     * @param sourceFrame The frame from which to transform
+     * @param time The time at which to transform
+     * @return True if the transform is possible, false otherwise
+     */
+    boolean canTransform(FrameHandle targetFrame, FrameHandle sourceFrame, long time);
+
     /**
      * Test if a transform is possible
      *
@@ -118,6 +328,21 @@ public interface TransformerCore extends TransformListener {
      */
     boolean frameExists(String frameId);
 
+    /**
+     * @return the bytes taken by the histories of all frames.
+     */
+    long getMemoryUsage();
+
+    /**
+     * Bytes taken by the history of every frame that received a transform,
+     * e.g. to size the heap for a frame tree or to find the frames a memory
+     * budget has to be spent on, see
+     * {@link org.openbase.rct.TransformerConfig#setMemoryBudget(long)}.
+     *
+     * @return the bytes by child frame name.
+     */
+    Map<String, Long> getFrameMemoryUsage();
+
     /**
      * Returns the parent of a frame.
      * @param time the timestamp used for the lookup.
@@ -27,11 +27,23 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.media.j3d.Transform3D;
 import javax.vecmath.Quat4d;
@@ -39,7 +51,15 @@ import javax.vecmath.Vector3d;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openbase.rct.FrameHandle;
+import org.openbase.rct.FramePoses;
+import org.openbase.rct.LookupStatus;
+import org.openbase.rct.MutableTransform;
+import org.openbase.rct.Pose;
 import org.openbase.rct.Transform;
+import org.openbase.rct.TransformCursor;
+import org.openbase.rct.TransformSubscription;
+import org.openbase.rct.TransformerConfig;
 import org.openbase.rct.TransformerException;
 import org.slf4j.LoggerFactory;
 
@@ -410,4 +430,821 @@ public class TransformerCoreDefaultTest {
 			// expected
 		}
 	}
+
+	@Test
+	public void testRequestTransformWaitsForData() throws InterruptedException, ExecutionException, TransformerException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		Transform transform = generateDefaultTransform();
+		transform.setTime(10);
+		core.setTransform(transform, false);
+		transform.setFrameParent("bar");
+		transform.setFrameChild("baz");
+		core.setTransform(transform, false);
+
+		final Future<Transform> future = core.requestTransform("foo", "baz", 20);
+		final Future<Transform> latest = core.requestTransform("foo", "baz", 0);
+		assertEquals(10, latest.get(1, TimeUnit.SECONDS).getTime());
+
+		// one frame of the path is not enough
+		transform.setTime(30);
+		core.setTransform(transform, false);
+		try {
+			future.get(200, TimeUnit.MILLISECONDS);
+			fail("not available yet");
+		} catch (TimeoutException ex) {
+			// expected
+		}
+
+		transform.setFrameParent("foo");
+		transform.setFrameChild("bar");
+		core.setTransform(transform, false);
+		final Transform out = future.get(1, TimeUnit.SECONDS);
+		assertEquals(20, out.getTime());
+		assertEquals(new Vector3d(0, 2, 4), out.getTranslation());
+	}
+
+	@Test
+	public void testRequestTransformWithDeadline() throws InterruptedException, ExecutionException, TransformerException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final CompletableFuture<Transform> expired = core.requestTransform("foo", "bar", 0, 50, TimeUnit.MILLISECONDS, null);
+		try {
+			expired.get(1, TimeUnit.SECONDS);
+			fail("the deadline has passed");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TimeoutException);
+		}
+
+		final CompletableFuture<Transform> cancelled = core.requestTransform("foo", "bar", 0, 0, TimeUnit.MILLISECONDS, null);
+		assertEquals(1, core.getPendingRequestCount());
+		cancelled.cancel(false);
+		assertEquals(0, core.getPendingRequestCount());
+
+		// callbacks run on the executor of the caller
+		final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "caller"));
+		try {
+			final CompletableFuture<String> thread = core.requestTransform("foo", "bar", 0, 1, TimeUnit.SECONDS, executor)
+					.thenApply(transform -> Thread.currentThread().getName());
+			core.setTransform(generateDefaultTransform(), false);
+			assertEquals("caller", thread.get(1, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(0, core.getPendingRequestCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testRequestCallbackMayChangeTheTree() throws InterruptedException, ExecutionException, TransformerException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final Transform added = generateDefaultTransform();
+		added.setFrameParent("bar");
+		added.setFrameChild("baz");
+		final Transform other = generateDefaultTransform();
+		other.setFrameParent("baz");
+		other.setFrameChild("qux");
+
+		// answered by the request checker after the insertion
+		final CompletableFuture<Void> pending = core.requestTransform("foo", "bar", 0, 0, TimeUnit.MILLISECONDS, null).thenAccept(transform -> {
+			try {
+				core.setTransform(added, false);
+			} catch (TransformerException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		core.setTransform(generateDefaultTransform(), false);
+		pending.get(1, TimeUnit.SECONDS);
+		assertTrue(core.canTransform("foo", "baz", 0));
+
+		// answered right away by the requesting thread
+		final CompletableFuture<Void> immediate = core.requestTransform("foo", "baz", 0, 0, TimeUnit.MILLISECONDS, null).thenAccept(transform -> {
+			try {
+				core.setTransform(other, false);
+			} catch (TransformerException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		immediate.get(1, TimeUnit.SECONDS);
+		assertTrue(core.canTransform("foo", "qux", 0));
+	}
+
+	@Test
+	public void testSubscribeTransform()throws InterruptedException, TransformerException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		Transform transform = generateDefaultTransform();
+		transform.setFrameParent("bar");
+		transform.setFrameChild("other");
+		core.setTransform(transform, false);
+
+		final BlockingQueue<Transform> updates = new LinkedBlockingQueue<>();
+		final CountDownLatch consumerBlocked = new CountDownLatch(1);
+		final CountDownLatch releaseConsumer = new CountDownLatch(1);
+		// the consumer blocks on the shared delivery threads
+		final TransformSubscription subscription = core.subscribeTransform("foo", "baz", 0, null, update -> {
+			updates.add(update);
+			if (update.getTime() == 20) {
+				consumerBlocked.countDown();
+				try {
+					releaseConsumer.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+
+		transform.setFrameParent("foo");
+		transform.setFrameChild("bar");
+		transform.setTime(10);
+		core.setTransform(transform, false);
+		transform.setFrameParent("bar");
+		transform.setFrameChild("baz");
+		core.setTransform(transform, false);
+		Transform first = updates.poll(1, TimeUnit.SECONDS);
+		assertEquals(10, first.getTime());
+		// the new frame baz may be delivered once more
+		while ((first = updates.poll(100, TimeUnit.MILLISECONDS)) != null) {
+			assertEquals(10, first.getTime());
+		}
+
+		// data of frames off the path is not delivered
+		transform.setFrameChild("other");
+		transform.setTime(15);
+		core.setTransform(transform, false);
+		assertTrue(updates.poll(100, TimeUnit.MILLISECONDS) == null);
+
+		// updates during a slow delivery are conflated to the latest one
+		transform.setFrameChild("baz");
+		transform.setTime(20);
+		core.setTransform(transform, false);
+		transform.setFrameParent("foo");
+		transform.setFrameChild("bar");
+		core.setTransform(transform, false);
+		assertTrue(consumerBlocked.await(1, TimeUnit.SECONDS));
+		// the blocked consumer delays neither deadlines nor other subscriptions
+		final CompletableFuture<Transform> expired = core.requestTransform("foo", "unknown", 0, 50, TimeUnit.MILLISECONDS, null);
+		final BlockingQueue<Transform> otherUpdates = new LinkedBlockingQueue<>();
+		final TransformSubscription other = core.subscribeTransform("foo", "bar", 0, null, otherUpdates::add);
+		assertEquals(20, otherUpdates.poll(1, TimeUnit.SECONDS).getTime());
+		other.cancel();
+		try {
+			expired.get(1, TimeUnit.SECONDS);
+			fail("the request has to expire");
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TimeoutException);
+		}
+		// baz alone only advances the common time to 10
+		while (updates.poll().getTime() != 20) {
+			// skip
+		}
+		for (int time = 21; time <= 30; time++) {
+			transform.setTime(time);
+			core.setTransform(transform, false);
+		}
+		transform.setFrameParent("bar");
+		transform.setFrameChild("baz");
+		core.setTransform(transform, false);
+		releaseConsumer.countDown();
+		Transform latest = updates.poll(1, TimeUnit.SECONDS);
+		assertEquals(30, latest.getTime());
+		assertEquals(new Vector3d(0, 2, 4), latest.getTranslation());
+		assertTrue(subscription.getConflatedCount() >= 10);
+		assertTrue(updates.poll(100, TimeUnit.MILLISECONDS) == null);
+
+		subscription.cancel();
+		assertTrue(subscription.isCancelled());
+		transform.setTime(40);
+		core.setTransform(transform, false);
+		assertTrue(updates.poll(100, TimeUnit.MILLISECONDS) == null);
+	}
+
+	@Test(timeout = 10000)
+	public void testSubscriptionOfShutDownExecutorIsCancelled() throws InterruptedException, TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.shutdown();
+		final TransformSubscription subscription = core.subscribeTransform("foo", "bar", 0, executor, update -> {
+		});
+		core.setTransform(generateDefaultTransform(), false);
+		while (!subscription.isCancelled()) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testSubscribeTransformWithRateLimit() throws InterruptedException, TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final AtomicInteger deliveries = new AtomicInteger();
+		final AtomicLong latestTime = new AtomicLong();
+		final TransformSubscription subscription = core.subscribeTransform("foo", "bar", 5, null, transform -> {
+			deliveries.incrementAndGet();
+			latestTime.set(transform.getTime());
+		});
+
+		Transform transform = generateDefaultTransform();
+		final long start = System.nanoTime();
+		for (int time = 1; time <= 50; time++) {
+			transform.setTime(time);
+			core.setTransform(transform, false);
+			Thread.sleep(5);
+		}
+		final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Thread.sleep(300);
+		subscription.cancel();
+
+		// one delivery at most every 200 ms plus the delayed latest update
+		assertTrue("delivered " + deliveries.get() + " in " + elapsedMillis + " ms", deliveries.get() <= elapsedMillis / 200 + 2);
+		assertEquals(50, latestTime.get());
+	}
+
+	@Test
+	public void testRequestChecksAreCoalesced() throws InterruptedException, ExecutionException, TransformerException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final Future<Transform> future = core.requestTransform("foo", "unknown", 0);
+
+		// every new frame releases the pending request
+		Transform transform = generateDefaultTransform();
+		for (int i = 0; i < 2000; i++) {
+			transform.setFrameChild("frame" + i);
+			core.setTransform(transform, false);
+		}
+		transform.setFrameChild("unknown");
+		core.setTransform(transform, false);
+
+		assertEquals("unknown", future.get(1, TimeUnit.SECONDS).getFrameChild());
+		LOGGER.info("coalesced " + core.getCoalescedRequestChecks() + " request checks");
+		assertTrue(core.getCoalescedRequestChecks() > 0);
+	}
+
+	@Test
+	public void testLookupTransforms() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final int objects = 50;
+		final String[] chain = {"map", "odom", "base", "camera"};
+		final String[] sources = new String[objects + 2];
+		for (long time = 10; time <= 20; time += 10) {
+			for (int i = 1; i < chain.length; i++) {
+				core.setTransform(new Transform(new Transform3D(new Quat4d(time, i, 1, 2), new Vector3d(i, time, 1), 1), chain[i - 1], chain[i], time), false);
+			}
+			for (int i = 0; i < objects; i++) {
+				sources[i] = "object" + i;
+				core.setTransform(new Transform(new Transform3D(new Quat4d(i, time, 3, 1), new Vector3d(time, i, 2), 1), i % 2 == 0 ? "camera" : "base", sources[i], time), false);
+			}
+		}
+		sources[objects] = "map";
+		sources[objects + 1] = "odom";
+
+		final Transform[] results = core.lookupTransforms("odom", sources, 15);
+		final FrameHandle[] handles = new FrameHandle[sources.length];
+		final MutableTransform[] holders = new MutableTransform[sources.length];
+		for (int i = 0; i < sources.length; i++) {
+			handles[i] = FrameHandle.of(sources[i]);
+			holders[i] = new MutableTransform();
+		}
+		core.lookupTransforms(FrameHandle.of("odom"), handles, 15, holders);
+		for (int i = 0; i < sources.length; i++) {
+			final Transform expected = core.lookupTransform("odom", sources[i], 15);
+			assertEquals(sources[i], results[i].getFrameChild());
+			assertEquals(15, results[i].getTime());
+			assertTrue(expected.getTranslation().epsilonEquals(results[i].getTranslation(), 1e-9));
+			assertTrue(expected.getRotationQuat().epsilonEquals(results[i].getRotationQuat(), 1e-9));
+			assertTrue(expected.getTranslation().epsilonEquals(holders[i].getTranslation(), 1e-9));
+		}
+
+		// latest time of every pair
+		assertEquals(20, core.lookupTransforms("map", sources, 0)[0].getTime());
+
+		core.setTransform(new Transform(new Transform3D(), "elsewhere", "lost", 10), false);
+		try {
+			core.lookupTransforms("map", new String[]{"object1", "lost"}, 15);
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			LOGGER.debug("expected transformer exception", ex);
+		}
+	}
+
+	/**
+	 * q and -q describe the same rotation.
+	 */
+	private static void assertSameRotation(Quat4d expected, Quat4d actual) {
+		final double dot = expected.x * actual.x + expected.y * actual.y + expected.z * actual.z + expected.w * actual.w;
+		assertEquals(1.0, Math.abs(dot), 1e-9);
+	}
+
+	@Test
+	public void testLookupFramePoses() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final String[] chain = {"map", "odom", "base", "arm", "hand"};
+		for (long time = 10; time <= 20; time += 10) {
+			for (int i = 1; i < chain.length; i++) {
+				core.setTransform(new Transform(new Transform3D(new Quat4d(time, i, 1, 2), new Vector3d(i, time, 1), 1), chain[i - 1], chain[i], time), false);
+			}
+			core.setTransform(new Transform(new Transform3D(new Quat4d(1, time, 3, 1), new Vector3d(time, 1, 2), 1), "base", "camera", time), false);
+		}
+		core.setTransform(new Transform(new Transform3D(), "world", "robot", 15), true);
+
+		final FramePoses poses = core.lookupFramePoses(15);
+		assertEquals(8, poses.size());
+		assertEquals(15, poses.getTime());
+		final MutableTransform pose = new MutableTransform();
+		for (final String frame : new String[]{"odom", "base", "arm", "hand", "camera"}) {
+			assertTrue(poses.getTransform(FrameHandle.of(frame), pose));
+			assertEquals("map", pose.getFrameParent());
+			final Transform expected = core.lookupTransform("map", frame, 15);
+			assertTrue(expected.getTranslation().epsilonEquals(pose.getTranslation(), 1e-9));
+			assertSameRotation(expected.getRotationQuat(), pose.getRotationQuat());
+		}
+		final int map = poses.indexOf(FrameHandle.of("map"));
+		assertEquals(FrameHandle.of("map"), poses.getRoot(map));
+		assertEquals(new Vector3d(), poses.getTranslation(map, new Vector3d()));
+		assertEquals(FrameHandle.of("world"), poses.getRoot(poses.indexOf(FrameHandle.of("robot"))));
+		assertEquals(-1, poses.indexOf(FrameHandle.of("unknown")));
+	}
+
+	@Test
+	public void testLookupTransformAllocationFree() throws TransformerException {
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			LOGGER.warn("thread allocation accounting not available, skip test");
+			return;
+		}
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			LOGGER.warn("thread allocation accounting not supported, skip test");
+			return;
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		Transform transform = generateDefaultTransform();
+		for (int i = 0; i < 100; i++) {
+			transform.setTime(i * 10);
+			transform.setFrameParent("foo");
+			transform.setFrameChild("bar");
+			core.setTransform(transform, false);
+			transform.setFrameParent("bar");
+			transform.setFrameChild("baz");
+			core.setTransform(transform, false);
+		}
+		transform.setFrameParent("foo");
+		transform.setFrameChild("static");
+		core.setTransform(transform, true);
+
+		final MutableTransform result = new MutableTransform();
+		final int lookups = 10000;
+
+		// warm up thread local state and the jit
+		for (int i = 0; i < lookups; i++) {
+			core.lookupTransform("static", "baz", i % 990 + 1, result);
+			core.lookupTransform("baz", "foo", 0, result);
+		}
+
+		final long threadId = Thread.currentThread().getId();
+		final long before = threadBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < lookups; i++) {
+			core.lookupTransform("static", "baz", i % 990 + 1, result);
+			core.lookupTransform("baz", "foo", 0, result);
+		}
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+		LOGGER.info("allocated " + allocated + " bytes during " + (2 * lookups) + " lookups");
+
+		// allow a small constant overhead of the measurement itself
+		assertTrue("lookups allocated " + allocated + " bytes", allocated < 1024);
+		assertEquals("baz", result.getFrameParent());
+		assertEquals("foo", result.getFrameChild());
+		assertEquals(990, result.getTime());
+	}
+
+	@Test
+	public void testLookupTransformByHandle() throws TransformerException, InterruptedException, ExecutionException, TimeoutException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final FrameHandle foo = FrameHandle.of("foo");
+		final FrameHandle baz = FrameHandle.of("baz");
+		assertTrue(foo == FrameHandle.of("foo"));
+
+		// handles can be resolved before the frames are known
+		assertFalse(core.canTransform(foo, baz, 0));
+		final Future<Transform> future = core.requestTransform(foo, baz, 0);
+		assertFalse(future.isDone());
+		try {
+			core.lookupTransform(foo, baz, 0);
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			LOGGER.debug("expected transformer exception", ex);
+		}
+
+		Transform transform = generateDefaultTransform();
+		core.setTransform(transform, false);
+		transform.setFrameParent("bar");
+		transform.setFrameChild("baz");
+		core.setTransform(transform, false);
+
+		assertTrue(core.canTransform(foo, baz, 0));
+		assertEquals(new Vector3d(0, 2, 4), future.get(1, TimeUnit.SECONDS).getTranslation());
+		Transform out0 = core.lookupTransform(foo, baz, 0);
+		assertEquals("foo", out0.getFrameParent());
+		assertEquals("baz", out0.getFrameChild());
+		assertEquals(core.lookupTransform("foo", "baz", 0).getTranslation(), out0.getTranslation());
+
+		final MutableTransform result = new MutableTransform();
+		core.lookupTransform(baz, foo, 0, result);
+		assertEquals(new Vector3d(0, -2, -4), result.getTranslation());
+		core.lookupTransform(baz, baz, 0, result);
+		assertEquals(new Vector3d(0, 0, 0), result.getTranslation());
+
+		try {
+			FrameHandle.of("/foo");
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			LOGGER.debug("expected transformer exception", ex);
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testUnusedFrameHandlesAreCollected() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		core.setTransform(generateDefaultTransform(), false);
+		final FrameHandle foo = FrameHandle.of("foo");
+		final FrameHandle bar = FrameHandle.of("bar");
+		assertEquals(new Vector3d(0, 1, 2), core.lookupTransform(foo, bar, 0).getTranslation());
+
+		// poses of per object frames do not keep their handles
+		final int first = new Transform(0, 0, 0, 0, 0, 0, 1, "map", "object", 0).toPose().getFrameChild().getIndex();
+		int index = Integer.MAX_VALUE;
+		for (int i = 0; index > first; i++) {
+			System.gc();
+			index = new Transform(0, 0, 0, 0, 0, 0, 1, "map", "object" + i, 0).toPose().getFrameChild().getIndex();
+		}
+
+		// handles in use stay interned
+		assertTrue(foo == FrameHandle.of("foo"));
+		assertEquals(new Vector3d(0, 1, 2), core.lookupTransform(FrameHandle.of("foo"), FrameHandle.of("bar"), 0).getTranslation());
+	}
+
+	@Test
+	public void testLookupPose() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final FrameHandle foo = FrameHandle.of("foo");
+		final FrameHandle baz = FrameHandle.of("baz");
+		Transform transform = generateDefaultTransform();
+		core.setTransform(transform, false);
+		transform.setFrameParent("bar");
+		transform.setFrameChild("baz");
+		core.setTransform(transform, false);
+
+		final Pose pose = core.lookupPose(foo, baz, 0);
+		assertTrue(foo == pose.getFrameParent());
+		assertTrue(baz == pose.getFrameChild());
+		assertEquals(new Vector3d(0, 2, 4), pose.getTranslation(new Vector3d()));
+		final Quat4d rotation = core.lookupTransform(foo, baz, 0).getRotationQuat();
+		assertEquals(rotation.x, pose.getQx(), 1e-12);
+		assertEquals(rotation.y, pose.getQy(), 1e-12);
+		assertEquals(rotation.z, pose.getQz(), 1e-12);
+		assertEquals(rotation.w, pose.getQw(), 1e-12);
+		assertEquals(pose, core.lookupPose(foo, baz, 0));
+		assertEquals(pose.hashCode(), core.lookupPose(foo, baz, 0).hashCode());
+		assertFalse(pose.equals(core.lookupPose(baz, foo, 0)));
+
+		// conversions in both directions keep the values
+		final Transform converted = pose.toTransform();
+		assertEquals("foo", converted.getFrameParent());
+		assertEquals(pose, converted.toPose());
+		assertEquals(core.lookupTransform(foo, baz, 0), converted);
+		assertEquals(new Vector3d(0, 2, 4), new Transform(converted.getTransform(), "foo", "baz", 0).toPose().getTranslation(new Vector3d()));
+	}
+
+	@Test
+	public void testNonUnitQuaternion() throws TransformerException {
+		// e.g. received over the network, rotation about z by 2 * atan(0.5)
+		final Transform received = new Transform(1, 2, 3, 0, 0, 2, 4, "foo", "bar", 0);
+		final Pose pose = received.toPose();
+		assertEquals(1, pose.getQx() * pose.getQx() + pose.getQy() * pose.getQy() + pose.getQz() * pose.getQz() + pose.getQw() * pose.getQw(), 1e-12);
+		assertEquals(0.5, pose.getQz() / pose.getQw(), 1e-12);
+
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		core.setTransform(received, false);
+		core.setTransform(new Transform(4, 5, 6, 0, 0, 0, 1, "bar", "baz", 0), false);
+		final Transform3D expected = new Transform3D(new Quat4d(0, 0, 0.5, 1), new Vector3d(1, 2, 3), 1);
+		expected.mul(new Transform3D(new Quat4d(0, 0, 0, 1), new Vector3d(4, 5, 6), 1));
+		final Vector3d translation = new Vector3d();
+		expected.get(translation);
+		assertTrue(translation.epsilonEquals(core.lookupTransform("foo", "baz", 0).getTranslation(), 1e-12));
+	}
+
+	@Test
+	public void testTransformCursor() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(10000);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 0; time <= 1000; time += 100) {
+			core.setTransform(new Transform(new Transform3D(new Quat4d(0, 0, Math.sin(time * 0.0005), Math.cos(time * 0.0005)), new Vector3d(time, 0, 0), 1), "odom", "base", time), false);
+		}
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(0, 0, 1), 1), "base", "lidar", 0), true);
+
+		final TransformCursor cursor = core.openCursor(FrameHandle.of("odom"), FrameHandle.of("lidar"));
+		final long[] times = new long[500];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = 1 + 2 * i;
+		}
+		final double[] poses = new double[7 * times.length];
+		cursor.lookup(times, 0, times.length, poses);
+		final MutableTransform result = new MutableTransform();
+		for (int i = 0; i < times.length; i++) {
+			final Transform expected = core.lookupTransform("odom", "lidar", times[i]);
+			assertEquals(expected.getTranslation().x, poses[7 * i], 1e-9);
+			assertEquals(1, poses[7 * i + 2], 1e-9);
+			assertEquals(expected.getRotationQuat().z, poses[7 * i + 5], 1e-9);
+			cursor.lookup(times[i], result);
+			assertEquals(expected.getTranslation().x, result.getTranslation().x, 1e-9);
+			assertEquals(times[i], result.getTime());
+		}
+
+		// rewinding is allowed, lookups outside of the history fail
+		cursor.lookup(50, result);
+		assertEquals(50, result.getTranslation().x, 1e-9);
+		try {
+			cursor.lookup(new long[]{500, 2000}, 0, 2, poses);
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			LOGGER.debug("expected transformer exception", ex);
+		}
+		try {
+			cursor.lookup(new long[]{500, 600}, 1, 2, poses);
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			LOGGER.debug("expected transformer exception", ex);
+		}
+	}
+
+	@Test
+	public void testTryLookupTransform() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(10000);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 100; time <= 1000; time += 100) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "odom", "base", time), false);
+		}
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(0, 0, 1), 1), "base", "lidar", 0), true);
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(1, 0, 0), 1), "other", "island", 500), false);
+
+		final MutableTransform result = new MutableTransform();
+		assertEquals(LookupStatus.OK, core.tryLookupTransform("odom", "lidar", 550, result));
+		assertEquals(550, result.getTranslation().x, 1e-9);
+		assertEquals(1, result.getTranslation().z, 1e-9);
+		assertEquals(550, result.getTime());
+		assertEquals(LookupStatus.OK, core.tryLookupTransform(FrameHandle.of("lidar"), FrameHandle.of("odom"), 0, result));
+		assertEquals(-1000, result.getTranslation().x, 1e-9);
+		assertEquals(LookupStatus.OK, core.tryLookupTransform("base", "base", 0, result));
+		assertEquals(1000, result.getTime());
+
+		// failures leave the result untouched
+		assertEquals(LookupStatus.UNKNOWN_FRAME, core.tryLookupTransform("odom", "unknown", 500, result));
+		assertEquals(LookupStatus.UNKNOWN_FRAME, core.tryLookupTransform(FrameHandle.of("unknown"), FrameHandle.of("unknown"), 0, result));
+		assertEquals(LookupStatus.NOT_CONNECTED, core.tryLookupTransform("odom", "island", 0, result));
+		assertEquals(LookupStatus.NOT_CONNECTED, core.tryLookupTransform(FrameHandle.of("island"), FrameHandle.of("lidar"), 500, result));
+		assertEquals(LookupStatus.EXTRAPOLATION_PAST, core.tryLookupTransform("odom", "lidar", 50, result));
+		assertEquals(LookupStatus.EXTRAPOLATION_PAST, core.tryLookupTransform("lidar", "odom", 50, result));
+		assertEquals(LookupStatus.EXTRAPOLATION_FUTURE, core.tryLookupTransform("odom", "lidar", 2000, result));
+		assertEquals(1000, result.getTime());
+
+		// the throwing lookup reports the same reason
+		try {
+			core.lookupTransform("odom", "lidar", 2000);
+			fail("a TransformerException was expected");
+		} catch (TransformerException ex) {
+			assertTrue(ex.getCause().getCause().getMessage().contains("future"));
+		}
+	}
+
+	@Test
+	public void testBoundedExtrapolation() throws TransformerException {
+		final TransformerConfig config = new TransformerConfig(10000);
+		config.setMaxExtrapolation(50);
+		TransformerCoreDefault core = new TransformerCoreDefault(config);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 100; time <= 1000; time += 100) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "odom", "base", time), false);
+		}
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(0, 0, 1), 1), "base", "lidar", 0), true);
+
+		Transform result = core.lookupTransform("odom", "lidar", 1030);
+		assertTrue(result.isExtrapolated());
+		assertEquals(1030, result.getTranslation().x, 1e-9);
+		assertEquals(1, result.getTranslation().z, 1e-9);
+		assertTrue(core.lookupTransform("lidar", "odom", 1050).isExtrapolated());
+		assertTrue(core.canTransform("odom", "lidar", 1050));
+		assertTrue(core.lookupTransforms("odom", new String[]{"lidar"}, 1020)[0].isExtrapolated());
+		assertTrue(core.lookupPose(FrameHandle.of("odom"), FrameHandle.of("lidar"), 1020).isExtrapolated());
+
+		final MutableTransform holder = new MutableTransform();
+		core.lookupTransform("odom", "lidar", 1040, holder);
+		assertTrue(holder.isExtrapolated());
+		core.lookupTransform("odom", "lidar", 950, holder);
+		assertFalse(holder.isExtrapolated());
+		assertFalse(core.lookupTransform("odom", "lidar", 0).isExtrapolated());
+
+		// beyond the horizon lookups still fail
+		assertFalse(core.canTransform("odom", "lidar", 1051));
+		assertEquals(LookupStatus.EXTRAPOLATION_FUTURE, core.tryLookupTransform("odom", "lidar", 1051, holder));
+	}
+
+	@Test
+	public void testInterpolationTypePerFrame() throws TransformerException {
+		final TransformerConfig config = new TransformerConfig(10000);
+		config.setInterpolationType("marker", TransformerConfig.InterpolationType.NEAREST);
+		config.setNearestTolerance(20);
+		TransformerCoreDefault core = new TransformerCoreDefault(config);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 100; time <= 300; time += 100) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "base", time), false);
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(0, time, 0), 1), "map", "marker", time), false);
+		}
+
+		// base interpolates, marker snaps to the closest detection
+		assertEquals(new Vector3d(150, 0, 0), core.lookupTransform("map", "base", 150).getTranslation());
+		assertEquals(new Vector3d(0, 200, 0), core.lookupTransform("map", "marker", 185).getTranslation());
+		assertEquals(new Vector3d(-285, 300, 0), core.lookupTransform("base", "marker", 285).getTranslation());
+		assertFalse(core.canTransform("map", "marker", 150));
+		assertTrue(core.canTransform("map", "marker", 315));
+	}
+
+	@Test
+	public void testCacheSettingsPerFrame() throws TransformerException {
+		final TransformerConfig config = new TransformerConfig(10000);
+		config.setCacheTime("joint_*", 100);
+		config.setMaxSamples("joint_?", 5);
+		config.setCacheTime("joint_1", 1000);
+		config.setPrecision("joint_*", TransformerConfig.Precision.FLOAT);
+		assertEquals(1000, config.getCacheTime("joint_1"));
+		assertEquals(100, config.getCacheTime("joint_2"));
+		assertEquals(10000, config.getCacheTime("base"));
+		assertEquals(5, config.getMaxSamples("joint_1"));
+		assertEquals(Integer.MAX_VALUE, config.getMaxSamples("joint_10"));
+		assertEquals(TransformerConfig.Precision.DOUBLE, config.getPrecision("base"));
+
+		TransformerCoreDefault core = new TransformerCoreDefault(config);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 10; time <= 1000; time += 10) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "base", time), false);
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "base", "joint_1", time), false);
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "base", "joint_2", time), false);
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "base", "joint_10", time), false);
+		}
+		assertTrue(core.canTransform("map", "base", 100));
+		assertTrue(core.canTransform("base", "joint_10", 900));
+		assertFalse(core.canTransform("base", "joint_10", 890));
+		assertTrue(core.canTransform("base", "joint_1", 960));
+		assertFalse(core.canTransform("base", "joint_1", 950));
+		assertFalse(core.canTransform("base", "joint_2", 950));
+		assertEquals(new Vector3d(965, 0, 0), core.lookupTransform("base", "joint_2", 965).getTranslation());
+	}
+
+	@Test
+	public void testMemoryBudget() throws TransformerException {
+		final TransformerConfig config = new TransformerConfig(100000);
+		config.setMemoryBudget(40000);
+		TransformerCoreDefault core = new TransformerCoreDefault(config);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 10; time <= 10000; time += 10) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "base", time), false);
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "idle", time), false);
+			assertEquals(new Vector3d(time, 0, 0), core.lookupTransform("map", "base", 0).getTranslation());
+		}
+
+		final Map<String, Long> usage = core.getFrameMemoryUsage();
+		assertEquals(2, usage.size());
+		assertEquals(core.getMemoryUsage(), usage.get("base") + usage.get("idle"));
+		assertTrue(core.getMemoryUsage() <= 40000);
+		// the frame that is not looked up gives up its history first
+		assertTrue(usage.get("idle") < usage.get("base"));
+		assertTrue(core.canTransform("map", "base", 9000));
+		assertFalse(core.canTransform("map", "idle", 9000));
+		// the latest samples are always kept
+		assertEquals(new Vector3d(9995, 0, 0), core.lookupTransform("map", "idle", 9995).getTranslation());
+	}
+
+	@Test
+	public void testMemoryBudgetRelaxesAfterPressure() throws TransformerException {
+		final TransformerConfig config = new TransformerConfig(1000);
+		config.setMemoryBudget(30000);
+		TransformerCoreDefault core = new TransformerCoreDefault(config);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		for (long time = 1; time <= 6000; time++) {
+			// a burst that fills the budget on its own, then a slow rate
+			if (time <= 3000 || time % 100 == 0) {
+				core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "burst", time), false);
+				if (time > 1) {
+					core.lookupTransform("map", "burst", time - 1);
+				}
+			}
+			if (time % 10 == 0) {
+				core.setTransform(new Transform(new Transform3D(identity, new Vector3d(time, 0, 0), 1), "map", "steady", time), false);
+			}
+			assertTrue(core.getMemoryUsage() <= 40000);
+			if (time == 3000) {
+				assertFalse(core.canTransform("map", "steady", 2100));
+			}
+		}
+		// the history of the idle frame is restored once the burst is over
+		assertTrue(core.canTransform("map", "steady", 5100));
+		assertEquals(new Vector3d(5100, 0, 0), core.lookupTransform("map", "steady", 5100).getTranslation());
+
+		core.clear();
+		assertTrue(core.getMemoryUsage() < 4000);
+	}
+
+	@Test
+	public void testLookupTransformAfterReparent() throws TransformerException {
+		TransformerCoreDefault core = new TransformerCoreDefault(1000);
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(1, 0, 0), 1), "foo", "baz", 1), false);
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(1, 0, 0), 1), "foo", "baz", 10), false);
+		assertEquals(new Vector3d(1, 0, 0), core.lookupTransform("foo", "baz", 0).getTranslation());
+		assertEquals(new Vector3d(1, 0, 0), core.lookupTransform("foo", "baz", 5).getTranslation());
+
+		// move baz below bar, the memoized path has to be resolved again
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(5, 0, 0), 1), "foo", "bar", 20), false);
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(1, 0, 0), 1), "bar", "baz", 20), false);
+		Transform latest = core.lookupTransform("foo", "baz", 0);
+		assertEquals(20, latest.getTime());
+		assertEquals(new Vector3d(6, 0, 0), latest.getTranslation());
+		assertEquals(new Vector3d(-6, 0, 0), core.lookupTransform("baz", "foo", 0).getTranslation());
+
+		// the tree at time 5 differs from the latest one
+		assertEquals(new Vector3d(1, 0, 0), core.lookupTransform("foo", "baz", 5).getTranslation());
+		assertEquals(new Vector3d(-1, 0, 0), core.lookupTransform("baz", "foo", 5).getTranslation());
+		assertEquals(new Vector3d(6, 0, 0), core.lookupTransform("foo", "baz", 20).getTranslation());
+	}
+
+	@Test
+	public void testLookupTransformAcrossStaticChain() throws TransformerException {
+		final int staticHops = 8;
+		TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final Transform3D expected = new Transform3D();
+		for (int i = 0; i < staticHops; i++) {
+			final Quat4d rotation = new Quat4d(0.1 * i, 0.2, 0.3, 1);
+			rotation.normalize();
+			final Transform3D mount = new Transform3D(rotation, new Vector3d(i, 1, 0), 1);
+			core.setTransform(new Transform(mount, "mount" + i, "mount" + (i + 1), 0), true);
+			expected.mul(mount);
+		}
+		final Transform3D joint = new Transform3D(new Quat4d(0, 0, 0, 1), new Vector3d(0, 0, 1), 1);
+		for (int time = 1; time <= 10; time++) {
+			core.setTransform(new Transform(joint, "mount" + staticHops, "tool", time), false);
+		}
+		core.setTransform(new Transform(joint, "mount0", "base", 1), false);
+		core.setTransform(new Transform(joint, "mount0", "base", 10), false);
+		expected.mul(joint);
+
+		final Vector3d expectedTranslation = new Vector3d();
+		expected.get(expectedTranslation);
+		for (int i = 0; i < 2; i++) {
+			final Vector3d translation = core.lookupTransform("mount0", "tool", 5).getTranslation();
+			expectedTranslation.sub(translation);
+			assertTrue(expectedTranslation.length() < 1e-9);
+			expected.get(expectedTranslation);
+		}
+
+		// republishing a static frame invalidates the precomposed chain
+		final Transform3D mount = new Transform3D(new Quat4d(0, 0, 0, 1), new Vector3d(0, 0, 100), 1);
+		core.setTransform(new Transform(mount, "mount" + (staticHops - 1), "mount" + staticHops, 0), true);
+		assertTrue(core.lookupTransform("mount0", "tool", 5).getTranslation().z > 50);
+		assertTrue(core.lookupTransform("base", "tool", 5).getTranslation().z > 50);
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentLookupAndInsert() throws Exception {
+		final TransformerCoreDefault core = new TransformerCoreDefault(100000);
+		final int samples = 20000;
+		final Quat4d identity = new Quat4d(0, 0, 0, 1);
+		core.setTransform(new Transform(new Transform3D(identity, new Vector3d(1, 0, 0), 1), "foo", "bar", 1), false);
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(() -> {
+				final MutableTransform result = new MutableTransform();
+				try {
+					while (running.get()) {
+						core.lookupTransform("foo", "bar", 0, result);
+						assertEquals(result.getTime(), result.getTranslation().x, 0);
+						final long time = 1 + (long) (Math.random() * (result.getTime() - 1));
+						core.lookupTransform("bar", "foo", time, result);
+						assertEquals(-time, result.getTranslation().x, 0);
+					}
+				} catch (Throwable ex) {
+					failure.compareAndSet(null, ex);
+				}
+			});
+			readers[r].start();
+		}
+
+		for (int i = 2; i <= samples; i++) {
+			core.setTransform(new Transform(new Transform3D(identity, new Vector3d(i, 0, 0), 1), "foo", "bar", i), false);
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("concurrent lookup failed", failure.get());
+		}
+		assertEquals(new Vector3d(samples, 0, 0), core.lookupTransform("foo", "bar", 0).getTranslation());
+	}
 }
@@ -0,0 +1,287 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transformer core that publishes the frame tree as an immutable snapshot
+ * through a single volatile reference. Lookups walk the snapshot that is
+ * current when they start and never lock on the tree, only the caches of the
+ * visited frames synchronize themselves.
+ *
+ * Samples for a known frame whose parent does not change are appended to the
+ * cache of the current snapshot. New frames, newly allocated caches and
+ * changed parents are applied to a copy that replaces the current snapshot.
+ * Writers of new snapshots are serialized, readers are never blocked by them.
+ */
+public class TransformerCoreSnapshot extends AbstractTransformerCore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformerCoreSnapshot.class);
+
+    /**
+     * Immutable state of the frame tree. The arrays are indexed by frame
+     * number and never change once the snapshot is published.
+     */
+    static final class Snapshot implements FrameGraph {
+
+        private final Map<String, Integer> frameIds;
+        private final String[] frameNames;
+        private final TransformCache[] frames;
+        private final int[] parents;
+        private final long topologyVersion;
+        private final AncestorIndex ancestors;
+
+        private Snapshot(Map<String, Integer> frameIds, String[] frameNames, TransformCache[] frames, int[] parents, long topologyVersion, AncestorIndex ancestors) {
+            this.frameIds = frameIds;
+            this.frameNames = frameNames;
+            this.frames = frames;
+            this.parents = parents;
+            this.topologyVersion = topologyVersion;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        public int getFrameCount() {
+            return frames.length;
+        }
+
+        @Override
+        public TransformCache getFrame(int frameNumber) {
+            if (frameNumber <= 0 || frameNumber >= frames.length) {
+                return null;
+            }
+            return frames[frameNumber];
+        }
+
+        @Override
+        public String getFrameName(int frameNumber) {
+            if (frameNumber < 0 || frameNumber >= frameNames.length) {
+                return null;
+            }
+            return frameNames[frameNumber];
+        }
+
+        @Override
+        public int getFrameNumber(String frameId) {
+            final Integer frameNumber = frameIds.get(frameId);
+            return frameNumber == null ? -1 : frameNumber;
+        }
+
+        /**
+         * @param frameNumber the frame number.
+         * @return the latest parent of the frame when the snapshot was built
+         * or 0 if the frame has no parent.
+         */
+        @Override
+        public int getLatestParent(int frameNumber) {
+            if (frameNumber <= 0 || frameNumber >= parents.length) {
+                return 0;
+            }
+            return parents[frameNumber];
+        }
+
+        @Override
+        public long getTopologyVersion() {
+            return topologyVersion;
+        }
+
+        @Override
+        public AncestorIndex getAncestorIndex() {
+            return ancestors;
+        }
+    }
+
+    /**
+     * Mutable copy of a snapshot used by writers to build its successor.
+     */
+    private static final class Builder {
+
+        private final Map<String, Integer> frameIds;
+        private String[] frameNames;
+        private TransformCache[] frames;
+        private int[] parents;
+        private int size;
+
+        private Builder(Snapshot snapshot) {
+            this.frameIds = new HashMap<>(snapshot.frameIds);
+            this.frameNames = Arrays.copyOf(snapshot.frameNames, snapshot.frameNames.length + 2);
+            this.frames = Arrays.copyOf(snapshot.frames, snapshot.frames.length + 2);
+            this.parents = Arrays.copyOf(snapshot.parents, snapshot.parents.length + 2);
+            this.size = snapshot.frames.length;
+        }
+
+        private int lookupOrInsertFrameNumber(String frameId) {
+            final Integer known = frameIds.get(frameId);
+            if (known != null) {
+                return known;
+            }
+            if (size == frames.length) {
+                frameNames = Arrays.copyOf(frameNames, size << 1);
+                frames = Arrays.copyOf(frames, size << 1);
+                parents = Arrays.copyOf(parents, size << 1);
+            }
+            final int frameNumber = size++;
+            frameIds.put(frameId, frameNumber);
+            frameNames[frameNumber] = frameId;
+            frames[frameNumber] = new TransformCacheNull();
+            parents[frameNumber] = 0;
+            LOGGER.debug("generated mapping \"" + frameId + "\" -> " + frameNumber + " (and reverse)");
+            return frameNumber;
+        }
+
+        private Snapshot build(long topologyVersion, AncestorIndex ancestors) {
+            return new Snapshot(frameIds,
+                    Arrays.copyOf(frameNames, size),
+                    Arrays.copyOf(frames, size),
+                    Arrays.copyOf(parents, size),
+                    topologyVersion,
+                    ancestors);
+        }
+    }
+
+    private final Object writeLock = new Object();
+    private final AncestorIndex ancestors = new AncestorIndex();
+    private volatile Snapshot snapshot;
+
+    public TransformerCoreSnapshot(long cacheTime) {
+        this(new TransformerConfig(cacheTime));
+    }
+
+    public TransformerCoreSnapshot(final TransformerConfig config) {
+        super(config);
+        final Map<String, Integer> frameIds = new HashMap<>();
+        frameIds.put(FrameRegistry.NO_PARENT, 0);
+        snapshot = new Snapshot(frameIds,
+                new String[]{FrameRegistry.NO_PARENT},
+                new TransformCache[]{new TransformCacheNull()},
+                new int[1],
+                0,
+                ancestors);
+    }
+
+    /**
+     * @return the snapshot of the frame tree that is currently published.
+     */
+    Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    FrameGraph acquireGraph() {
+        return snapshot;
+    }
+
+    @Override
+    void releaseGraph(FrameGraph graph) {
+        // snapshots are immutable, nothing to release
+    }
+
+    @Override
+    int insertTransform(Transform stripped, String authority, boolean isStatic) {
+        final String frameChild = stripped.getFrameChild();
+        final String frameParent = stripped.getFrameParent();
+
+        // fast path: both frames are known and the parent does not change, so
+        // the sample is appended without a new snapshot
+        final Snapshot current = snapshot;
+        final int frameNumberChild = current.getFrameNumber(frameChild);
+        final int frameNumberParent = current.getFrameNumber(frameParent);
+        if (frameNumberChild > 0 && frameNumberParent >= 0 && current.getLatestParent(frameNumberChild) == frameNumberParent) {
+            final TransformCache frame = current.getFrame(frameNumberChild);
+            if (frame.isValid()) {
+                final boolean inserted = insertData(frame, new TransformInternal(stripped, frameNumberParent, frameNumberChild), authority);
+                // a concurrent writer may have published a different parent
+                // in between, the snapshot has to follow the cache
+                if (frame.getLatestParent() != snapshot.getLatestParent(frameNumberChild)) {
+                    synchronized (writeLock) {
+                        publishLatestParent(frameNumberChild, frame);
+                    }
+                }
+                return inserted ? frameNumberChild : -1;
+            }
+        }
+
+        // new frame, new cache or new parent: publish a new snapshot
+        synchronized (writeLock) {
+            final Snapshot previous = snapshot;
+            final Builder builder = new Builder(previous);
+            final int child = builder.lookupOrInsertFrameNumber(frameChild);
+            final int parent = builder.lookupOrInsertFrameNumber(frameParent);
+            TransformCache frame = builder.frames[child];
+            if (!frame.isValid()) {
+                LOGGER.debug("allocate frame " + child);
+                frame = allocateCache(frameChild, isStatic);
+                builder.frames[child] = frame;
+            }
+            LOGGER.debug("insert transform " + parent + " -> " + child + " to " + frame);
+            final boolean inserted = insertData(frame, new TransformInternal(stripped, parent, child), authority);
+            builder.parents[child] = frame.getLatestParent();
+            if (builder.size == previous.getFrameCount()
+                    && builder.frames[child] == previous.getFrame(child)
+                    && builder.parents[child] == previous.getLatestParent(child)) {
+                // e.g. an outdated sample with a different parent
+                return inserted ? child : -1;
+            }
+
+            // the index is updated first, readers of the previous snapshot
+            // detect the newer version and do without it
+            final long topologyVersion = previous.topologyVersion + 1;
+            for (int added = previous.getFrameCount(); added < builder.size; added++) {
+                ancestors.addFrame(added, topologyVersion);
+            }
+            if (builder.parents[child] != previous.getLatestParent(child)) {
+                ancestors.setParent(child, builder.parents[child], topologyVersion);
+            }
+            snapshot = builder.build(topologyVersion, ancestors);
+            notifyTransformationUpdate();
+            topologyChanged();
+            return inserted ? child : -1;
+        }
+    }
+
+    /**
+     * Publishes a snapshot with the latest parent of the given frame taken
+     * from its cache. Requires the write lock.
+     */
+    private void publishLatestParent(int frameNumber, TransformCache frame) {
+        final Snapshot current = snapshot;
+        final int latestParent = frame.getLatestParent();
+        if (current.getLatestParent(frameNumber) == latestParent) {
+            return;
+        }
+        final int[] parents = current.parents.clone();
+        parents[frameNumber] = latestParent;
+        final long topologyVersion = current.topologyVersion + 1;
+        ancestors.setParent(frameNumber, latestParent, topologyVersion);
+        snapshot = new Snapshot(current.frameIds, current.frameNames, current.frames, parents, topologyVersion, ancestors);
+        topologyChanged();
+    }
+}
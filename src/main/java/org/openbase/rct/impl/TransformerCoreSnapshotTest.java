@@ -0,0 +1,169 @@
+package org.openbase.rct.impl;
+
+/*-
+ * #%L
+ * RCT
+ * %%
+ * Copyright (C) 2015 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.media.j3d.Transform3D;
+import javax.vecmath.Quat4d;
+import javax.vecmath.Vector3d;
+
+import org.junit.Test;
+import org.openbase.rct.FrameHandle;
+import org.openbase.rct.MutableTransform;
+import org.openbase.rct.Transform;
+import org.openbase.rct.TransformerException;
+
+public class TransformerCoreSnapshotTest {
+
+	private static final Quat4d IDENTITY = new Quat4d(0, 0, 0, 1);
+
+	Transform generateTransform(String parent, String child, double x, long time) {
+		return new Transform(new Transform3D(IDENTITY, new Vector3d(x, 0, 0), 1), parent, child, time);
+	}
+
+	@Test
+	public void testLookupTransformNonStatic() throws TransformerException {
+		TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("foo", "bar", 1, 0), false);
+		core.setTransform(generateTransform("foo", "bar", 1, 10), false);
+		core.setTransform(generateTransform("bar", "baz", 2, 0), false);
+		core.setTransform(generateTransform("bar", "baz", 2, 10), false);
+
+		assertEquals(new Vector3d(3, 0, 0), core.lookupTransform("foo", "baz", 5).getTranslation());
+		assertEquals(new Vector3d(-3, 0, 0), core.lookupTransform("baz", "foo", 5).getTranslation());
+		assertTrue(core.canTransform("foo", "baz", 0));
+		assertFalse(core.canTransform("foo", "qux", 0));
+		assertTrue(core.frameExists("baz"));
+		assertEquals("bar", core.getParent("baz", 5));
+		assertEquals(3, core.getFrameStrings().size());
+	}
+
+	@Test
+	public void testSnapshotIsOnlyReplacedOnTopologyChanges() throws TransformerException {
+		TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("foo", "bar", 1, 1), false);
+		final TransformerCoreSnapshot.Snapshot first = core.getSnapshot();
+
+		// new sample for a known edge
+		core.setTransform(generateTransform("foo", "bar", 2, 2), false);
+		assertSame(first, core.getSnapshot());
+
+		// new frame
+		core.setTransform(generateTransform("foo", "baz", 1, 3), false);
+		final TransformerCoreSnapshot.Snapshot second = core.getSnapshot();
+		assertNotSame(first, second);
+		assertEquals(3, first.getFrameCount());
+		assertEquals(4, second.getFrameCount());
+
+		// new parent of a known frame
+		core.setTransform(generateTransform("baz", "bar", 5, 3), false);
+		final TransformerCoreSnapshot.Snapshot third = core.getSnapshot();
+		assertNotSame(second, third);
+		final int bar = third.getFrameNumber("bar");
+		assertEquals(third.getFrameNumber("baz"), third.getLatestParent(bar));
+		assertEquals(second.getFrameNumber("foo"), second.getLatestParent(bar));
+		assertEquals(new Vector3d(6, 0, 0), core.lookupTransform("foo", "bar", 0).getTranslation());
+	}
+
+	@Test
+	public void testFrameHandleOfNewerSnapshot() throws TransformerException {
+		TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("foo", "bar", 1, 0), true);
+		final TransformerCoreSnapshot.Snapshot old = core.getSnapshot();
+		core.setTransform(generateTransform("bar", "baz", 2, 0), true);
+
+		final FrameHandle foo = FrameHandle.of("foo");
+		final FrameHandle baz = FrameHandle.of("baz");
+		assertTrue(core.canTransform(foo, baz, 0));
+		assertEquals(new Vector3d(3, 0, 0), core.lookupTransform(foo, baz, 0).getTranslation());
+
+		// the frame number cached for the handle must not leak into a walk
+		// of a snapshot that does not know the frame yet
+		assertTrue(core.getSnapshot().getFrameNumber("baz") >= old.getFrameCount());
+		assertEquals(-1, core.resolveFrameNumber(old, baz));
+		assertEquals(old.getFrameNumber("foo"), core.resolveFrameNumber(old, foo));
+	}
+
+	@Test
+	public void testLookupTransformStatic() throws TransformerException {
+		TransformerCoreSnapshot core = new TransformerCoreSnapshot(1000);
+		core.setTransform(generateTransform("foo", "bar", 1, 0), true);
+		core.setTransform(generateTransform("bar", "baz", 2, 0), true);
+
+		assertEquals(new Vector3d(3, 0, 0), core.lookupTransform("foo", "baz", 100).getTranslation());
+		assertEquals(new Vector3d(-3, 0, 0), core.lookupTransform("baz", "foo", 0).getTranslation());
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentLookupAndInsert() throws Exception {
+		final TransformerCoreSnapshot core = new TransformerCoreSnapshot(100000);
+		final int samples = 20000;
+		core.setTransform(generateTransform("foo", "bar", 1, 1), false);
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final Thread[] readers = new Thread[4];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(() -> {
+				final MutableTransform result = new MutableTransform();
+				try {
+					while (running.get()) {
+						core.lookupTransform("foo", "bar", 0, result);
+						assertEquals(result.getTime(), result.getTranslation().x, 0);
+						final long time = 1 + (long) (Math.random() * (result.getTime() - 1));
+						core.lookupTransform("bar", "foo", time, result);
+						assertEquals(-time, result.getTranslation().x, 0);
+					}
+				} catch (Throwable ex) {
+					failure.compareAndSet(null, ex);
+				}
+			});
+			readers[r].start();
+		}
+
+		for (int i = 2; i <= samples; i++) {
+			core.setTransform(generateTransform("foo", "bar", i, i), false);
+			if (i % 100 == 0) {
+				// grow the tree while the readers walk it
+				core.setTransform(generateTransform("bar", "leaf" + i, 1, i), true);
+			}
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("concurrent lookup failed", failure.get());
+		}
+		assertEquals(new Vector3d(samples, 0, 0), core.lookupTransform("foo", "bar", 0).getTranslation());
+		assertEquals(new Vector3d(samples + 1, 0, 0), core.lookupTransform("foo", "leaf" + samples, 0).getTranslation());
+	}
+}
@@ -24,7 +24,6 @@ package org.openbase.rct.impl.rsb;
 
 import java.nio.ByteBuffer;
 
-import javax.media.j3d.Transform3D;
 import javax.vecmath.Quat4d;
 import javax.vecmath.Vector3d;
 
@@ -103,9 +102,7 @@ public class TransformConverter implements Converter<ByteBuffer> {
         Quat4d quat = new Quat4d(rstRot.getQx(), rstRot.getQy(), rstRot.getQz(), rstRot.getQw());
         Vector3d vec = new Vector3d(rstTrans.getX(), rstTrans.getY(), rstTrans.getZ());
 
-        Transform3D transform3d = new Transform3D(quat, vec, 1.0);
-
-        Transform newTrans = new Transform(transform3d, t.getFrameParent(), t.getFrameChild(), timeMSec);
+        Transform newTrans = new Transform(vec.x, vec.y, vec.z, quat.x, quat.y, quat.z, quat.w, t.getFrameParent(), t.getFrameChild(), timeMSec);
         return newTrans;
     }
 